@@ -0,0 +1,34 @@
+package benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import akka.dispatch.ExecutionContexts;
+import scala.concurrent.Await;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Pools and waiting shared by the benchmarks
+ */
+final class BenchmarkSupport {
+
+	private BenchmarkSupport(){}
+
+	static ExecutionContextExecutorService pool(int threads) {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			final Thread thread = new Thread(r, "benchmark-pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		return ExecutionContexts.fromExecutorService(executor);
+	}
+
+	static <T> T await(Future<T> future) throws Exception {
+
+		return Await.result(future, Duration.Inf());
+	}
+
+}
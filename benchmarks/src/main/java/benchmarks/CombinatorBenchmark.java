@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import akka.dispatch.Futures;
+import errors.GenericError;
+import monad.MonadFutEither;
+import monad.impl.MonadFutEitherError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.concurrent.Future;
+import scala.util.Either;
+import scala.util.Right;
+
+/**
+ * sequence over completed futures of several sizes, and map2-map4 over completed ones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinatorBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	int size;
+
+	private ExecutionContextExecutorService ec;
+
+	private MonadFutEither<GenericError> monad;
+
+	private List<Future<Either<GenericError, Integer>>> futures;
+
+	private Future<Either<GenericError, Integer>> a;
+
+	private Future<Either<GenericError, String>> b;
+
+	private Future<Either<GenericError, Long>> c;
+
+	private Future<Either<GenericError, Double>> d;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		ec = BenchmarkSupport.pool(4);
+		monad = new MonadFutEitherError(ec);
+
+		futures = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			futures.add(Futures.successful(new Right<>(i)));
+		}
+
+		a = monad.pure(1);
+		b = monad.pure("b");
+		c = monad.pure(3L);
+		d = monad.pure(4.0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		ec.shutdown();
+	}
+
+	@Benchmark
+	public Either<GenericError, List<Integer>> sequence() throws Exception {
+
+		return BenchmarkSupport.await(monad.sequence(futures));
+	}
+
+	@Benchmark
+	public Either<GenericError, String> map2() throws Exception {
+
+		return BenchmarkSupport.await(monad.map2(a, b, (x, y) -> y + x));
+	}
+
+	@Benchmark
+	public Either<GenericError, String> map3() throws Exception {
+
+		return BenchmarkSupport.await(monad.map3(a, b, c, (x, y, z) -> y + x + z));
+	}
+
+	@Benchmark
+	public Either<GenericError, String> map4() throws Exception {
+
+		return BenchmarkSupport.await(monad.map4(a, b, c, d, (x, y, z, w) -> y + x + z + w));
+	}
+
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import akka.dispatch.Futures;
+import errors.GenericError;
+import monad.MonadFutEither;
+import monad.MonadFutEitherWrapper;
+import monad.impl.MonadFutEitherError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.concurrent.Future;
+import scala.util.Either;
+import scala.util.Right;
+
+/**
+ * The same flatMap/map chain written with the monad, the DSL and the lazy DSL,
+ * starting from a future completed on the pool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DslBenchmark {
+
+	@Param({"10", "100"})
+	int depth;
+
+	private ExecutionContextExecutorService ec;
+
+	private MonadFutEither<GenericError> monad;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		ec = BenchmarkSupport.pool(4);
+		monad = new MonadFutEitherError(ec);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		ec.shutdown();
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> monad() throws Exception {
+
+		Future<Either<GenericError, Integer>> result = source();
+		for (int i = 0; i < depth; i++) {
+			result = monad.map(monad.flatMap(result, n -> monad.pure(n + 1)), n -> n * 2);
+		}
+		return BenchmarkSupport.await(result);
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> dsl() throws Exception {
+
+		return BenchmarkSupport.await(chain(monad.dslFrom(source())).value());
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> lazyDsl() throws Exception {
+
+		return BenchmarkSupport.await(chain(monad.dslLazyFrom(source())).value());
+	}
+
+	private MonadFutEitherWrapper<GenericError, Integer> chain(MonadFutEitherWrapper<GenericError, Integer> from) {
+
+		MonadFutEitherWrapper<GenericError, Integer> result = from;
+		for (int i = 0; i < depth; i++) {
+			result = result.flatMap(n -> monad.pure(n + 1)).map(n -> n * 2);
+		}
+		return result;
+	}
+
+	private Future<Either<GenericError, Integer>> source() {
+
+		return Futures.future(() -> new Right<>(0), ec);
+	}
+
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import akka.dispatch.Futures;
+import errors.GenericError;
+import monad.MonadFutEither;
+import monad.impl.MonadFutEitherError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.concurrent.Future;
+import scala.util.Either;
+import scala.util.Right;
+
+/**
+ * flatMap and map chains of MonadFutEitherError, from a completed future (inline path)
+ * and from one completed on the pool (every stage is a callback)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonadChainBenchmark {
+
+	@Param({"1", "10", "100", "1000"})
+	int depth;
+
+	private ExecutionContextExecutorService ec;
+
+	private MonadFutEither<GenericError> monad;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		ec = BenchmarkSupport.pool(4);
+		monad = new MonadFutEitherError(ec);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		ec.shutdown();
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> flatMapCompleted() throws Exception {
+
+		return BenchmarkSupport.await(flatMaps(monad.pure(0)));
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> flatMapAsync() throws Exception {
+
+		return BenchmarkSupport.await(flatMaps(Futures.future(() -> new Right<>(0), ec)));
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> mapCompleted() throws Exception {
+
+		return BenchmarkSupport.await(maps(monad.pure(0)));
+	}
+
+	@Benchmark
+	public Either<GenericError, Integer> mapAsync() throws Exception {
+
+		return BenchmarkSupport.await(maps(Futures.future(() -> new Right<>(0), ec)));
+	}
+
+	private Future<Either<GenericError, Integer>> flatMaps(Future<Either<GenericError, Integer>> from) {
+
+		Future<Either<GenericError, Integer>> result = from;
+		for (int i = 0; i < depth; i++) {
+			result = monad.flatMap(result, n -> monad.pure(n + 1));
+		}
+		return result;
+	}
+
+	private Future<Either<GenericError, Integer>> maps(Future<Either<GenericError, Integer>> from) {
+
+		Future<Either<GenericError, Integer>> result = from;
+		for (int i = 0; i < depth; i++) {
+			result = monad.map(result, n -> n + 1);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import errors.GenericError;
+import exercise.bookstore.bean.Summary;
+import exercise.bookstore.business.SummaryService;
+import exercise.bookstore.business.impl.SummaryServiceImpl;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.impl.ServiceSalesMock;
+import monad.impl.MonadFutEitherError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.util.Either;
+
+/**
+ * A whole getSummary over the mock services, a success and a failure
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBenchmark {
+
+	private ExecutionContextExecutorService ec;
+
+	private SummaryService<GenericError> srvSummary;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		ec = BenchmarkSupport.pool(4);
+		srvSummary = new SummaryServiceImpl(
+				new ServiceBookMock(ec),
+				new ServiceSalesMock(ec),
+				new ServiceChapterFutEitherMock(ec),
+				new ServiceAuthorMock(ec),
+				new MonadFutEitherError(ec));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		ec.shutdown();
+	}
+
+	@Benchmark
+	public Either<GenericError, Summary> getSummary() throws Exception {
+
+		return BenchmarkSupport.await(srvSummary.getSummary(1));
+	}
+
+	@Benchmark
+	public Either<GenericError, Summary> getSummaryNotFound() throws Exception {
+
+		return BenchmarkSupport.await(srvSummary.getSummary(3));
+	}
+
+}
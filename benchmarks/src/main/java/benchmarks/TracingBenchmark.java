@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.ExecutionContextExecutor;
+import util.SameThreadExecutionContext;
+import util.TraceContext;
+import util.TracingExecutionContext;
+
+/**
+ * The cost of a hop through TracingExecutionContext. The tasks run on the submitting thread,
+ * but without its TraceContext, as on a pool thread, so the tracing hop really sets and
+ * restores the context. plain pays for that worker the same way, so the difference is the
+ * capture, attach and restore of the TraceContext alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingBenchmark {
+
+	private final ExecutionContextExecutor plain = new Worker();
+
+	private final ExecutionContextExecutor tracing = new TracingExecutionContext(plain);
+
+	private final Runnable task = () -> {};
+
+	private TraceContext previous;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		previous = TraceContext.attach(TraceContext.start("trace-1").with("user", "reader"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		TraceContext.restore(previous);
+	}
+
+	@Benchmark
+	public void plain() {
+
+		plain.execute(task);
+	}
+
+	@Benchmark
+	public void tracing() {
+
+		tracing.execute(task);
+	}
+
+	/**
+	 * prepare() is deprecated, but it is what Scala 2.12's onComplete calls
+	 */
+	@SuppressWarnings("deprecation")
+	@Benchmark
+	public void tracingPrepared() {
+
+		tracing.prepare().execute(task);
+	}
+
+	/**
+	 * Runs tasks on the calling thread with no TraceContext, like a thread of a pool
+	 */
+	private static final class Worker implements ExecutionContextExecutor {
+
+		@Override
+		public void execute(Runnable runnable) {
+
+			final TraceContext previous = TraceContext.attach(null);
+			try {
+				runnable.run();
+			} finally {
+				TraceContext.restore(previous);
+			}
+		}
+
+		@Override
+		public void reportFailure(Throwable cause) {
+
+			SameThreadExecutionContext.INSTANCE.reportFailure(cause);
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package errors.impl;
+
+public class CircuitOpenError implements errors.GenericError {
+
+	private final String description;
+
+	public CircuitOpenError(String description) {
+		super();
+		this.description = description;
+	}
+
+	@Override
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitOpenError [description=" + description + "]";
+	}
+
+}
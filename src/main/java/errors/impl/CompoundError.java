@@ -0,0 +1,54 @@
+package errors.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import errors.GenericError;
+
+public class CompoundError implements errors.GenericError {
+
+	private final List<GenericError> errors;
+
+	public CompoundError(List<GenericError> errors) {
+		super();
+		this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+	}
+
+	/**
+	 * One error stays as it is; several are put together in a flat CompoundError
+	 */
+	public static GenericError of(List<GenericError> errors) {
+
+		if (errors.size() == 1) {
+			return errors.get(0);
+		}
+
+		final List<GenericError> flat = new ArrayList<>(errors.size());
+		for (GenericError error : errors) {
+			if (error instanceof CompoundError) {
+				flat.addAll(((CompoundError) error).getErrors());
+			} else {
+				flat.add(error);
+			}
+		}
+
+		return new CompoundError(flat);
+	}
+
+	public List<GenericError> getErrors() {
+		return errors;
+	}
+
+	@Override
+	public String getDescription() {
+		return errors.stream().map(GenericError::getDescription).collect(Collectors.joining("; "));
+	}
+
+	@Override
+	public String toString() {
+		return "CompoundError [errors=" + errors + "]";
+	}
+
+}
@@ -0,0 +1,33 @@
+package errors.impl;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import akka.pattern.CircuitBreakerOpenException;
+import errors.GenericError;
+
+public final class Errors {
+
+	private Errors(){}
+
+	/**
+	 * The GenericError for an exception thrown by a service or a continuation
+	 */
+	public static GenericError fromThrowable(Throwable t) {
+
+		if (t instanceof TimeoutException) {
+			return new TimeoutError(t.getMessage());
+		}
+
+		if (t instanceof CircuitBreakerOpenException) {
+			return new CircuitOpenError(t.getMessage());
+		}
+
+		if (t instanceof RejectedExecutionException) {
+			return new RejectedError(t.getMessage());
+		}
+
+		return new MyError(t.getMessage());
+	}
+
+}
@@ -0,0 +1,28 @@
+package errors.impl;
+
+import java.util.List;
+
+import errors.GenericError;
+
+/**
+ * A CompoundError that also carries the part of the result that could be built
+ */
+public class PartialError<T> extends CompoundError {
+
+	private final T partial;
+
+	public PartialError(List<GenericError> errors, T partial) {
+		super(errors);
+		this.partial = partial;
+	}
+
+	public T getPartial() {
+		return partial;
+	}
+
+	@Override
+	public String toString() {
+		return "PartialError [errors=" + getErrors() + ", partial=" + partial + "]";
+	}
+
+}
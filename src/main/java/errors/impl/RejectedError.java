@@ -0,0 +1,22 @@
+package errors.impl;
+
+public class RejectedError implements errors.GenericError {
+
+	private final String description;
+
+	public RejectedError(String description) {
+		super();
+		this.description = description;
+	}
+
+	@Override
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public String toString() {
+		return "RejectedError [description=" + description + "]";
+	}
+
+}
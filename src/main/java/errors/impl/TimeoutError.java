@@ -0,0 +1,22 @@
+package errors.impl;
+
+public class TimeoutError implements errors.GenericError {
+
+	private final String description;
+
+	public TimeoutError(String description) {
+		super();
+		this.description = description;
+	}
+
+	@Override
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public String toString() {
+		return "TimeoutError [description=" + description + "]";
+	}
+
+}
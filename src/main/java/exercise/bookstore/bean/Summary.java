@@ -1,7 +1,10 @@
 package exercise.bookstore.bean;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public class Summary {
 	
@@ -13,12 +16,28 @@ public class Summary {
 	
 	private final Author author;
 
+	private final Set<Part> missing;
+
+	/**
+	 * The parts a summary can be without when it is built against a deadline
+	 */
+	public enum Part { CHAPTERS, SALES }
+
 	public Summary(Book book, List<Chapter> chapter, Optional<Sales> sales, Author author) {
+		this(book, chapter, sales, author, Collections.emptySet());
+	}
+
+	/**
+	 * @param missing the parts that did not arrive in time: without them chapter may be
+	 *                only some of the chapters, and sales is empty
+	 */
+	public Summary(Book book, List<Chapter> chapter, Optional<Sales> sales, Author author, Set<Part> missing) {
 		super();
 		this.book = book;
 		this.chapter = chapter;
 		this.sales = sales;
 		this.author = author;
+		this.missing = missing.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(missing));
 	}
 
 	public Book getBook() {
@@ -37,6 +56,14 @@ public class Summary {
 		return author;
 	}
 
+	public Set<Part> getMissing() {
+		return missing;
+	}
+
+	public boolean isComplete() {
+		return missing.isEmpty();
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -45,6 +72,7 @@ public class Summary {
 		result = prime * result + ((book == null) ? 0 : book.hashCode());
 		result = prime * result + ((chapter == null) ? 0 : chapter.hashCode());
 		result = prime * result + ((sales == null) ? 0 : sales.hashCode());
+		result = prime * result + missing.hashCode();
 		return result;
 	}
 
@@ -77,13 +105,15 @@ public class Summary {
 				return false;
 		} else if (!sales.equals(other.sales))
 			return false;
+		if (!missing.equals(other.missing))
+			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
 		return "Summary [book=" + book + ", chapter=" + chapter + ", sales="
-				+ sales + ", author=" + author + "]";
+				+ sales + ", author=" + author + ", missing=" + missing + "]";
 	}
 	
 	
@@ -2,11 +2,41 @@ package exercise.bookstore.business;
 
 
 import exercise.bookstore.bean.Summary;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.reactivestreams.Publisher;
 import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
 import scala.util.Either;
+import util.FuturePublisher;
 
 public interface SummaryService<E> {
 	
 	Future<Either<E, Summary>> getSummary(Integer bookId);
 
+	/**
+	 * The summary with what has arrived when the deadline expires: the book and its author are
+	 * needed, while the chapters that are late and the sales are left out and listed in
+	 * Summary.getMissing()
+	 */
+	Future<Either<E, Summary>> getSummary(Integer bookId, FiniteDuration deadline);
+
+	/**
+	 * The summaries of several books by book id. If any book fails, a Left with an error per failed book;
+	 * it is an errors.impl.PartialError whose getPartial() has the summaries of the other books.
+	 */
+	Future<Either<E, Map<Integer, Summary>>> getSummaries(List<Integer> bookIds);
+
+	/**
+	 * The summaries of the books of bookIds as the subscriber asks for them, with at most
+	 * concurrency of them being built or waiting to be delivered at once
+	 *
+	 * @param ordered in the order of bookIds rather than as they are ready
+	 */
+	default Publisher<Either<E, Summary>> streamSummaries(Iterator<Integer> bookIds, int concurrency, boolean ordered) {
+
+		return new FuturePublisher<>(bookIds, this::getSummary, concurrency, ordered);
+	}
+
 }
@@ -1,7 +1,28 @@
 package exercise.bookstore.business.impl;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import errors.GenericError;
+import errors.impl.MyError;
+import errors.impl.PartialError;
+import errors.impl.TimeoutError;
+import exercise.bookstore.bean.Author;
+import exercise.bookstore.bean.Book;
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.bean.Sales;
 import exercise.bookstore.bean.Summary;
 import exercise.bookstore.business.SummaryService;
 import exercise.bookstore.service.ServiceAuthor;
@@ -10,17 +31,26 @@ import exercise.bookstore.service.ServiceChapter;
 import exercise.bookstore.service.ServiceSales;
 import monad.MonadFutEither;
 import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
 import scala.util.Either;
+import scala.util.Left;
+import scala.util.Right;
+import scala.util.Try;
+import util.RequestContext;
 
 
 public class SummaryServiceImpl implements SummaryService<GenericError> {
 
+	private static final int DEFAULT_CHAPTERS_IN_FLIGHT = 8;
+
 	private final ServiceBook<GenericError> srvBook;
 	private final ServiceSales<GenericError> srvSales;
 	private final ServiceChapter<GenericError> srvChapter;
 	private final ServiceAuthor<GenericError> srvAuthor;
 	
 	private final MonadFutEither<GenericError> monadTransformer;
+
+	private final int chaptersInFlight;
 	
 	
 	public SummaryServiceImpl(ServiceBook<GenericError> srvBook,
@@ -28,20 +58,295 @@ public class SummaryServiceImpl implements SummaryService<GenericError> {
 			ServiceChapter<GenericError> srvChapter,
 			ServiceAuthor<GenericError> srvAuthor,
 			MonadFutEither<GenericError> monadTransformer) {
+		this(srvBook, srvSales, srvChapter, srvAuthor, monadTransformer, DEFAULT_CHAPTERS_IN_FLIGHT);
+	}
+
+	public SummaryServiceImpl(ServiceBook<GenericError> srvBook,
+			ServiceSales<GenericError> srvSales,
+			ServiceChapter<GenericError> srvChapter,
+			ServiceAuthor<GenericError> srvAuthor,
+			MonadFutEither<GenericError> monadTransformer,
+			int chaptersInFlight) {
 		super();
 		this.srvBook = srvBook;
 		this.srvSales = srvSales;
 		this.srvChapter = srvChapter;
 		this.srvAuthor = srvAuthor;
 		this.monadTransformer = monadTransformer;
+		this.chaptersInFlight = chaptersInFlight;
 	}
 
 	@Override
 	public Future<Either<GenericError, Summary>> getSummary(Integer bookId) {
 
+		final Future<Either<GenericError, Optional<Sales>>> salesFu = optionalSales(bookId);
+
+		return monadTransformer.dslFrom(srvBook.getBook(bookId))
+				.flatMap(book -> monadTransformer.map3(
+						monadTransformer.parTraverse(book.getChapters(), chaptersInFlight, srvChapter::getChapter),
+						salesFu,
+						srvAuthor.getAuthor(book.getIdAuthor()),
+						(chapters, sales, author) -> new Summary(book, chapters, sales, author)))
+				.handleErrorWith(e -> monadTransformer.raiseError(new MyError("It is impossible to get book summary")))
+				.value();
+	}
+
+	/**
+	 * Each stage waits for at most what is left of the deadline on the shared timer; once the
+	 * book and the author are there, a late stage gives the summary of what has completed.
+	 * The chapters are fetched chaptersInFlight at a time, as in getSummary.
+	 *
+	 * The deadline goes to the service calls in the RequestContext (the current one, if any,
+	 * with its deadline capped), so calls that would start after it are skipped.
+	 */
+	@Override
+	public Future<Either<GenericError, Summary>> getSummary(Integer bookId, FiniteDuration deadline) {
+
+		final RequestContext current = RequestContext.current();
+		final RequestContext context = current == null
+				? RequestContext.create(UUID.randomUUID().toString(), deadline)
+				: current.withBudget(deadline);
+
+		return context.call(() -> summaryWithin(bookId, deadline));
+	}
+
+	private Future<Either<GenericError, Summary>> summaryWithin(Integer bookId, FiniteDuration deadline) {
+
+		final long start = System.nanoTime();
+		final Future<Either<GenericError, Optional<Sales>>> salesFu = optionalSales(bookId);
+
+		return monadTransformer.dslFrom(monadTransformer.timeout(srvBook.getBook(bookId), deadline))
+				.flatMap(book -> {
+					final List<Long> idChapters = book.getChapters();
+					final AtomicReferenceArray<Future<Either<GenericError, Chapter>>> chaptersFu =
+							new AtomicReferenceArray<>(idChapters.size());
+					final List<Integer> indexes = new ArrayList<>(idChapters.size());
+					for (int i = 0; i < idChapters.size(); i++) {
+						indexes.add(i);
+					}
+
+					final Future<Either<GenericError, List<Chapter>>> allChapters = monadTransformer.parTraverse(indexes, chaptersInFlight, i -> {
+						final Future<Either<GenericError, Chapter>> chapterFu = srvChapter.getChapter(idChapters.get(i));
+						chaptersFu.set(i, chapterFu);
+						return chapterFu;
+					});
+
+					return monadTransformer.flatMap(
+							monadTransformer.timeout(srvAuthor.getAuthor(book.getIdAuthor()), remaining(start, deadline)),
+							author -> monadTransformer.handleErrorWith(
+									monadTransformer.timeout(
+											monadTransformer.map2(allChapters, salesFu,
+													(chapters, sales) -> new Summary(book, chapters, sales, author)),
+											remaining(start, deadline)),
+									e -> e instanceof TimeoutError
+											? partialSummary(book, author, chaptersFu, salesFu)
+											: monadTransformer.raiseError(e)));
+				})
+				.handleErrorWith(e -> monadTransformer.raiseError(e instanceof TimeoutError
+						? new TimeoutError("It is impossible to get book summary within " + deadline)
+						: new MyError("It is impossible to get book summary")))
+				.value();
+	}
+
+	private static FiniteDuration remaining(long start, FiniteDuration deadline) {
+
+		return FiniteDuration.create(Math.max(0, deadline.toNanos() - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * The summary with the chapters and sales that have completed by now; chapters that
+	 * parTraverse has not started yet are missing as well
+	 */
+	private Future<Either<GenericError, Summary>> partialSummary(Book book, Author author,
+			AtomicReferenceArray<Future<Either<GenericError, Chapter>>> chaptersFu,
+			Future<Either<GenericError, Optional<Sales>>> salesFu) {
+
+		final Set<Summary.Part> missing = EnumSet.noneOf(Summary.Part.class);
+		final List<Chapter> chapters = new ArrayList<>(chaptersFu.length());
+
+		for (int i = 0; i < chaptersFu.length(); i++) {
+
+			final Future<Either<GenericError, Chapter>> chapterFu = chaptersFu.get(i);
+
+			if (chapterFu == null || !chapterFu.isCompleted()) {
+				missing.add(Summary.Part.CHAPTERS);
+				continue;
+			}
+
+			final Try<Either<GenericError, Chapter>> chapter = chapterFu.value().get();
+			final GenericError error = chapter.isFailure()
+					? monadTransformer.errorFrom(chapter.failed().get())
+					: chapter.get().isLeft() ? chapter.get().left().get() : null;
+
+			if (error instanceof TimeoutError) {
+				missing.add(Summary.Part.CHAPTERS);
+			} else if (error != null) {
+				return monadTransformer.raiseError(error);
+			} else {
+				chapters.add(chapter.get().right().get());
+			}
+		}
+
+		Optional<Sales> sales = Optional.empty();
+
+		if (!salesFu.isCompleted()) {
+			missing.add(Summary.Part.SALES);
+		} else if (salesFu.value().get().isSuccess() && salesFu.value().get().get().isRight()) {
+			sales = salesFu.value().get().get().right().get();
+		}
+
+		return monadTransformer.pure(new Summary(book, chapters, sales, author, missing));
+	}
+
+	/**
+	 * Fetches each book, author and sales once however many times they appear,
+	 * and the chapters of all the books in getChapters batches. When some books fail,
+	 * the Left is a PartialError that also holds the summaries of the others.
+	 */
+	@Override
+	public Future<Either<GenericError, Map<Integer, Summary>>> getSummaries(List<Integer> bookIds) {
+
+		final List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(bookIds));
+
+		final List<Future<Either<GenericError, Either<GenericError, Book>>>> booksFu = new ArrayList<>(ids.size());
+		final List<Future<Either<GenericError, Optional<Sales>>>> salesFu = new ArrayList<>(ids.size());
+		for (Integer bookId : ids) {
+			booksFu.add(attempt(srvBook.getBook(bookId)));
+			salesFu.add(optionalSales(bookId));
+		}
+
+		return monadTransformer.flatMap(monadTransformer.sequence(booksFu), books -> {
+
+			final Set<String> authorIds = new LinkedHashSet<>();
+			final Set<Long> chapterIds = new LinkedHashSet<>();
+			for (Either<GenericError, Book> book : books) {
+				if (book.isRight()) {
+					authorIds.add(book.right().get().getIdAuthor());
+					chapterIds.addAll(book.right().get().getChapters());
+				}
+			}
+
+			final List<String> authors = new ArrayList<>(authorIds);
+			final List<Future<Either<GenericError, Either<GenericError, Author>>>> authorsFu = new ArrayList<>(authors.size());
+			for (String idAuthor : authors) {
+				authorsFu.add(attempt(srvAuthor.getAuthor(idAuthor)));
+			}
+
+			return monadTransformer.flatMap3(
+					monadTransformer.sequence(authorsFu),
+					chaptersById(new ArrayList<>(chapterIds)),
+					monadTransformer.sequence(salesFu),
+					(authorList, chapters, sales) -> {
+						final Map<String, Either<GenericError, Author>> authorsById = new HashMap<>();
+						for (int i = 0; i < authors.size(); i++) {
+							authorsById.put(authors.get(i), authorList.get(i));
+						}
+						return summaries(ids, books, authorsById, chapters, sales);
+					});
+		});
+	}
+
+	private Future<Either<GenericError, Map<Integer, Summary>>> summaries(List<Integer> ids,
+			List<Either<GenericError, Book>> books,
+			Map<String, Either<GenericError, Author>> authors,
+			Map<Long, Either<GenericError, Chapter>> chapters,
+			List<Optional<Sales>> sales) {
+
+		final Map<Integer, Summary> summaries = new LinkedHashMap<>();
+		final List<GenericError> errors = new ArrayList<>();
+
+		for (int i = 0; i < ids.size(); i++) {
+
+			final Either<GenericError, Summary> summary = summary(books.get(i), authors, chapters, sales.get(i));
+
+			if (summary.isRight()) {
+				summaries.put(ids.get(i), summary.right().get());
+			} else {
+				errors.add(new MyError("It is impossible to get book summary " + ids.get(i)
+						+ ": " + summary.left().get().getDescription()));
+			}
+		}
+
+		return errors.isEmpty()
+				? monadTransformer.pure(summaries)
+				: monadTransformer.raiseError(new PartialError<>(errors, Collections.unmodifiableMap(summaries)));
+	}
+
+	private Either<GenericError, Summary> summary(Either<GenericError, Book> bookOrError,
+			Map<String, Either<GenericError, Author>> authors,
+			Map<Long, Either<GenericError, Chapter>> chapters,
+			Optional<Sales> sales) {
+
+		if (bookOrError.isLeft()) {
+			return new Left<>(bookOrError.left().get());
+		}
+
+		final Book book = bookOrError.right().get();
+
+		final Either<GenericError, Author> author = authors.get(book.getIdAuthor());
+		if (author.isLeft()) {
+			return new Left<>(author.left().get());
+		}
+
+		final List<Chapter> bookChapters = new ArrayList<>(book.getChapters().size());
+		for (Long idChapter : book.getChapters()) {
+			final Either<GenericError, Chapter> chapter = chapters.get(idChapter);
+			if (chapter.isLeft()) {
+				return new Left<>(chapter.left().get());
+			}
+			bookChapters.add(chapter.right().get());
+		}
+
+		return new Right<>(new Summary(book, bookChapters, sales, author.right().get()));
+	}
+
+	/**
+	 * Each chapter or its error; a failed batch is the error of all its chapters.
+	 * The ids go in batches of chaptersInFlight, with up to chaptersInFlight batches
+	 * running at once.
+	 */
+	private Future<Either<GenericError, Map<Long, Either<GenericError, Chapter>>>> chaptersById(List<Long> idChapters) {
+
+		if (idChapters.isEmpty()) {
+			return monadTransformer.pure(Collections.emptyMap());
+		}
+
+		final List<List<Long>> batches = new ArrayList<>();
+		for (int from = 0; from < idChapters.size(); from += chaptersInFlight) {
+			batches.add(idChapters.subList(from, Math.min(idChapters.size(), from + chaptersInFlight)));
+		}
+
+		return monadTransformer.map(
+				monadTransformer.parTraverse(batches, chaptersInFlight, batch -> attempt(srvChapter.getChapters(batch))),
+				results -> {
+					final Map<Long, Either<GenericError, Chapter>> chapters = new HashMap<>();
+					for (int b = 0; b < batches.size(); b++) {
+						final List<Long> ids = batches.get(b);
+						final Either<GenericError, List<Either<GenericError, Chapter>>> batch = results.get(b);
+						for (int i = 0; i < ids.size(); i++) {
+							chapters.put(ids.get(i), batch.isLeft()
+									? new Left<>(batch.left().get())
+									: batch.right().get().get(i));
+						}
+					}
+					return chapters;
+				});
+	}
+
+	/**
+	 * Never a Left: the error, if any, is inside the Right
+	 */
+	private <T> Future<Either<GenericError, Either<GenericError, T>>> attempt(Future<Either<GenericError, T>> from) {
+
+		return monadTransformer.handleError(
+				monadTransformer.map(from, t -> new Right<>(t)),
+				e -> new Left<>(e));
+	}
 
-		//TODO: Code the logic to build a Future<Either<GenericError, Summary>>
+	private Future<Either<GenericError, Optional<Sales>>> optionalSales(Integer bookId) {
 
-		return null;
+		return monadTransformer.handleError(
+				monadTransformer.map(srvSales.getSales(bookId), Optional::of),
+				e -> Optional.empty());
 	}
 }
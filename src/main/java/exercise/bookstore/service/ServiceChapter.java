@@ -1,6 +1,10 @@
 package exercise.bookstore.service;
 
 import exercise.bookstore.bean.Chapter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import monad.FanIn;
 import scala.concurrent.Future;
 import scala.util.Either;
 
@@ -8,4 +12,34 @@ public interface ServiceChapter<E> {
 	
 	Future<Either<E, Chapter>> getChapter(long idChapter);
 
+	/**
+	 * The chapters in the order of idChapters, each one a Right or the Left of that chapter.
+	 * A Left (or a failed future) for the whole call means the batch itself failed.
+	 *
+	 * By default one getChapter per id, waited for with FanIn; services with a batch endpoint
+	 * should override it, and decorators should forward it. The default cannot make an E
+	 * from an exception, so a getChapter that fails (rather than answering a Left) fails
+	 * the batch; see oneByOne for callers that can.
+	 */
+	default Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+		return oneByOne(this, idChapters, null);
+	}
+
+	/**
+	 * getChapters through one getChapter per id, where a call that fails gets the Left
+	 * of errorFrom so it does not fail the other chapters
+	 */
+	static <E> Future<Either<E, List<Either<E, Chapter>>>> oneByOne(ServiceChapter<E> srv,
+			List<Long> idChapters, Function<Throwable, E> errorFrom) {
+
+		final List<Future<Either<E, Chapter>>> calls = new ArrayList<>(idChapters.size());
+
+		for (Long idChapter : idChapters) {
+			calls.add(srv.getChapter(idChapter));
+		}
+
+		return FanIn.settled(calls, errorFrom);
+	}
+
 }
@@ -0,0 +1,287 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import akka.dispatch.Futures;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Try;
+import util.SameThreadExecutionContext;
+
+/**
+ * Cache of Future<Either<E, V>> by key. The future is cached as soon as the call starts, so
+ * concurrent misses share it; a call that fails with an exception is not cached. The TTL
+ * counts from when the call completes.
+ *
+ * Eviction is a segmented LRU per stripe: the miss puts a new entry in a probation segment
+ * and its first hit moves it to the protected one, so a burst of keys read once does not
+ * push out the entries that are read again.
+ */
+public final class AsyncCache<K, E, V> {
+
+	private static final int MAX_STRIPES = 16;
+
+	private static final int MIN_ENTRIES_PER_STRIPE = 16;
+
+	private final CachePolicy policy;
+
+	private final Stripe<K, E, V>[] stripes;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	@SuppressWarnings("unchecked")
+	public AsyncCache(CachePolicy policy) {
+
+		int count = 1;
+		while (count < MAX_STRIPES && policy.maxEntries() / (count * 2) >= MIN_ENTRIES_PER_STRIPE) {
+			count *= 2;
+		}
+
+		this.policy = policy;
+		this.stripes = (Stripe<K, E, V>[]) new Stripe<?, ?, ?>[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new Stripe<>((policy.maxEntries() + count - 1) / count);
+		}
+	}
+
+	/**
+	 * The cached future for key, or the future of load(key), which is cached.
+	 * Concurrent misses of a key share one call: the first one puts a promise in the
+	 * cache under the stripe lock, and only that caller calls load.
+	 */
+	public Future<Either<E, V>> get(K key, Function<K, Future<Either<E, V>>> load) {
+
+		final Stripe<K, E, V> stripe = stripeFor(key);
+		final long now = policy.now();
+		final Entry<E, V> candidate = new Entry<>();
+		final Entry<E, V> cached = stripe.putIfAbsent(key, candidate, entry -> isUsable(entry, now));
+
+		if (cached != candidate) {
+			hits.increment();
+			if (now >= cached.expiresAt && cached.refreshing.compareAndSet(false, true)) {
+				refresh(stripe, key, cached, load);
+			}
+			return cached.promise.future();
+		}
+
+		misses.increment();
+
+		Future<Either<E, V>> loaded;
+
+		try {
+			loaded = load.apply(key);
+		} catch (RuntimeException e) {
+			loaded = Futures.failed(e);
+		}
+
+		loaded.onComplete(t -> {
+			if (!expireOrRemove(candidate, t)) {
+				stripe.remove(key, candidate);
+			}
+			candidate.promise.complete(t);
+			return BoxedUnit.UNIT;
+		}, SameThreadExecutionContext.INSTANCE);
+
+		return candidate.promise.future();
+	}
+
+	public void invalidate(K key) {
+
+		stripeFor(key).remove(key);
+	}
+
+	public long hits() {
+
+		return hits.sum();
+	}
+
+	public long misses() {
+
+		return misses.sum();
+	}
+
+	public double hitRate() {
+
+		final long h = hits.sum();
+		final long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public int size() {
+
+		int size = 0;
+		for (Stripe<K, E, V> stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	private void refresh(Stripe<K, E, V> stripe, K key, Entry<E, V> stale, Function<K, Future<Either<E, V>>> load) {
+
+		final Future<Either<E, V>> loaded;
+
+		try {
+			loaded = load.apply(key);
+		} catch (RuntimeException e) {
+			stale.refreshing.set(false);
+			return;
+		}
+
+		final Entry<E, V> fresh = new Entry<>();
+
+		loaded.onComplete(t -> {
+			if (expireOrRemove(fresh, t)) {
+				fresh.promise.complete(t);
+				stripe.replace(key, stale, fresh);
+			}
+			stale.refreshing.set(false);
+			return BoxedUnit.UNIT;
+		}, SameThreadExecutionContext.INSTANCE);
+	}
+
+	/**
+	 * In flight, fresh, or expired for less than the stale window
+	 */
+	private boolean isUsable(Entry<E, V> entry, long now) {
+
+		return entry.expiresAt == Long.MAX_VALUE || now - entry.expiresAt < policy.staleNanos();
+	}
+
+	/**
+	 * Sets when a completed entry expires, counting from its completion; false if it
+	 * must not be cached. Runs before the entry's promise completes, so nobody sees a
+	 * completed entry without its expiry.
+	 */
+	private boolean expireOrRemove(Entry<E, V> entry, Try<Either<E, V>> t) {
+
+		if (t.isFailure()) {
+			return false;
+		}
+
+		final boolean left = t.get().isLeft();
+
+		if (left && policy.negativeTtlNanos() <= 0) {
+			return false;
+		}
+
+		entry.expiresAt = policy.now() + (left ? policy.negativeTtlNanos() : policy.ttlNanos());
+		return true;
+	}
+
+	private Stripe<K, E, V> stripeFor(K key) {
+
+		final int h = key.hashCode();
+		return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+	}
+
+	private static final class Entry<E, V> {
+
+		private final Promise<Either<E, V>> promise = Futures.promise();
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		/**
+		 * Never while the call is in flight
+		 */
+		private volatile long expiresAt = Long.MAX_VALUE;
+	}
+
+	private static final class Stripe<K, E, V> {
+
+		private final int capacity;
+
+		private final int protectedCapacity;
+
+		private final LinkedHashMap<K, Entry<E, V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+		private final LinkedHashMap<K, Entry<E, V>> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+		private Stripe(int capacity) {
+			this.capacity = capacity;
+			this.protectedCapacity = capacity * 4 / 5;
+		}
+
+		synchronized Entry<E, V> get(K key) {
+
+			final Entry<E, V> hot = protect.get(key);
+			if (hot != null) {
+				return hot;
+			}
+
+			final Entry<E, V> entry = probation.remove(key);
+			if (entry != null) {
+				protect.put(key, entry);
+				if (protect.size() > protectedCapacity) {
+					final Map.Entry<K, Entry<E, V>> eldest = protect.entrySet().iterator().next();
+					protect.remove(eldest.getKey());
+					probation.put(eldest.getKey(), eldest.getValue());
+				}
+			}
+			return entry;
+		}
+
+		/**
+		 * The entry for key if it is usable, else entry, which takes its place
+		 */
+		synchronized Entry<E, V> putIfAbsent(K key, Entry<E, V> entry, Predicate<Entry<E, V>> usable) {
+
+			final Entry<E, V> existing = get(key);
+			if (existing != null && usable.test(existing)) {
+				return existing;
+			}
+
+			put(key, entry);
+			return entry;
+		}
+
+		synchronized void put(K key, Entry<E, V> entry) {
+
+			protect.remove(key);
+			probation.put(key, entry);
+
+			while (probation.size() + protect.size() > capacity) {
+				final LinkedHashMap<K, Entry<E, V>> victims = probation.isEmpty() ? protect : probation;
+				victims.remove(victims.keySet().iterator().next());
+			}
+		}
+
+		synchronized void replace(K key, Entry<E, V> old, Entry<E, V> entry) {
+
+			if (protect.get(key) == old) {
+				protect.put(key, entry);
+			} else if (probation.get(key) == old) {
+				probation.put(key, entry);
+			}
+		}
+
+		synchronized void remove(K key, Entry<E, V> entry) {
+
+			if (protect.get(key) == entry) {
+				protect.remove(key);
+			} else if (probation.get(key) == entry) {
+				probation.remove(key);
+			}
+		}
+
+		synchronized void remove(K key) {
+
+			protect.remove(key);
+			probation.remove(key);
+		}
+
+		synchronized int size() {
+
+			return probation.size() + protect.size();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.function.LongSupplier;
+
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * How much an AsyncCache holds and for how long: the maximum number of entries,
+ * the TTL of Rights and of Lefts, and how long an expired entry may still be served
+ * while it is refreshed in the background.
+ */
+public final class CachePolicy {
+
+	private final int maxEntries;
+
+	private final long ttlNanos;
+
+	private final long negativeTtlNanos;
+
+	private final long staleNanos;
+
+	private final LongSupplier clock;
+
+	private CachePolicy(int maxEntries, long ttlNanos, long negativeTtlNanos, long staleNanos, LongSupplier clock) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlNanos;
+		this.negativeTtlNanos = negativeTtlNanos;
+		this.staleNanos = staleNanos;
+		this.clock = clock;
+	}
+
+	/**
+	 * Lefts are not cached and expired entries are not served
+	 */
+	public static CachePolicy expireAfterWrite(int maxEntries, FiniteDuration ttl) {
+
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+		}
+
+		return new CachePolicy(maxEntries, ttl.toNanos(), 0, 0, System::nanoTime);
+	}
+
+	/**
+	 * Caches Lefts too, usually for much less than the TTL of Rights
+	 */
+	public CachePolicy withNegativeTtl(FiniteDuration negativeTtl) {
+
+		return new CachePolicy(maxEntries, ttlNanos, negativeTtl.toNanos(), staleNanos, clock);
+	}
+
+	/**
+	 * For stale after an entry expires, it is still served while a single call refreshes it
+	 */
+	public CachePolicy withStaleWhileRevalidate(FiniteDuration stale) {
+
+		return new CachePolicy(maxEntries, ttlNanos, negativeTtlNanos, stale.toNanos(), clock);
+	}
+
+	/**
+	 * @param clock nanoseconds, System::nanoTime by default
+	 */
+	public CachePolicy withClock(LongSupplier clock) {
+
+		return new CachePolicy(maxEntries, ttlNanos, negativeTtlNanos, staleNanos, clock);
+	}
+
+	int maxEntries() {
+		return maxEntries;
+	}
+
+	long ttlNanos() {
+		return ttlNanos;
+	}
+
+	long negativeTtlNanos() {
+		return negativeTtlNanos;
+	}
+
+	long staleNanos() {
+		return staleNanos;
+	}
+
+	long now() {
+		return clock.getAsLong();
+	}
+
+}
@@ -0,0 +1,101 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import akka.dispatch.Futures;
+import exercise.bookstore.bean.Author;
+import exercise.bookstore.bean.Book;
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.bean.Sales;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import monad.FanIn;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import util.SameThreadExecutionContext;
+
+/**
+ * Services answering from a cache. Each service gets its own cache, so each result type has its own TTL.
+ */
+public final class CachedServices {
+
+	private CachedServices(){}
+
+	public static <E> ServiceBook<E> book(ServiceBook<E> srv, AsyncCache<Integer, E, Book> cache) {
+
+		return bookId -> cache.get(bookId, srv::getBook);
+	}
+
+	/**
+	 * A batch takes the cached chapters from the cache and asks srv.getChapters for the
+	 * others in a single call, whose chapters are cached like those of getChapter
+	 */
+	public static <E> ServiceChapter<E> chapter(ServiceChapter<E> srv, AsyncCache<Long, E, Chapter> cache) {
+
+		return new ServiceChapter<E>() {
+
+			@Override
+			public Future<Either<E, Chapter>> getChapter(long idChapter) {
+
+				return cache.get(idChapter, srv::getChapter);
+			}
+
+			@Override
+			public Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+				final Map<Long, Promise<Either<E, Chapter>>> misses = new LinkedHashMap<>();
+				final List<Future<Either<E, Chapter>>> chapters = new ArrayList<>(idChapters.size());
+
+				for (Long idChapter : idChapters) {
+					chapters.add(cache.get(idChapter, id -> {
+						final Promise<Either<E, Chapter>> promise = Futures.promise();
+						misses.put(id, promise);
+						return promise.future();
+					}));
+				}
+
+				if (!misses.isEmpty()) {
+					load(srv, misses);
+				}
+
+				return FanIn.settled(chapters, null);
+			}
+		};
+	}
+
+	private static <E> void load(ServiceChapter<E> srv, Map<Long, Promise<Either<E, Chapter>>> misses) {
+
+		final List<Long> ids = new ArrayList<>(misses.keySet());
+		final Future<Either<E, List<Either<E, Chapter>>>> loaded;
+
+		try {
+			loaded = srv.getChapters(ids);
+		} catch (RuntimeException e) {
+			misses.values().forEach(p -> p.tryFailure(e));
+			return;
+		}
+
+		loaded.onComplete(t -> {
+			ChapterLoader.complete(ids, misses, t);
+			return BoxedUnit.UNIT;
+		}, SameThreadExecutionContext.INSTANCE);
+	}
+
+	public static <E> ServiceAuthor<E> author(ServiceAuthor<E> srv, AsyncCache<String, E, Author> cache) {
+
+		return id -> cache.get(id, srv::getAuthor);
+	}
+
+	public static <E> ServiceSales<E> sales(ServiceSales<E> srv, AsyncCache<Integer, E, Sales> cache) {
+
+		return bookId -> cache.get(bookId, srv::getSales);
+	}
+
+}
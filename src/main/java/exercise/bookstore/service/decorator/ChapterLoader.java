@@ -0,0 +1,176 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import akka.actor.Scheduler;
+import akka.dispatch.Futures;
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.service.ServiceChapter;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.FiniteDuration;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Left;
+import scala.util.Try;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+import util.Schedulers;
+
+/**
+ * DataLoader-style front end of a ServiceChapter: the getChapter calls made within a window
+ * are sent as a single getChapters call, once per id, and each caller gets its own future.
+ * A batch is sent early when it reaches maxBatchSize.
+ *
+ * A batch serves several requests, so it is sent without a RequestContext, as a coalesced
+ * call in ServiceBase; a caller whose request is already done fails without joining a batch.
+ */
+public final class ChapterLoader<E> implements ServiceChapter<E> {
+
+	private final ServiceChapter<E> srv;
+
+	private final Scheduler scheduler;
+
+	private final ExecutionContext ec;
+
+	private final FiniteDuration window;
+
+	private final int maxBatchSize;
+
+	private Map<Long, Promise<Either<E, Chapter>>> batch = new LinkedHashMap<>();
+
+	/**
+	 * On the shared scheduler, so the window is at least its tick (10ms by default)
+	 *
+	 * @param ec where the batches sent by the timer call the service
+	 */
+	public ChapterLoader(ServiceChapter<E> srv, ExecutionContext ec, FiniteDuration window, int maxBatchSize) {
+		this(srv, Schedulers.shared(), ec, window, maxBatchSize);
+	}
+
+	public ChapterLoader(ServiceChapter<E> srv, Scheduler scheduler, ExecutionContext ec, FiniteDuration window, int maxBatchSize) {
+		this.srv = srv;
+		this.scheduler = scheduler;
+		this.ec = ec;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	@Override
+	public Future<Either<E, Chapter>> getChapter(long idChapter) {
+
+		final RequestContext context = RequestContext.current();
+		if (context != null && context.isDone()) {
+			return Futures.failed(context.failure());
+		}
+
+		final Promise<Either<E, Chapter>> promise;
+		Map<Long, Promise<Either<E, Chapter>>> full = null;
+
+		synchronized (this) {
+
+			final Promise<Either<E, Chapter>> pending = batch.get(idChapter);
+			if (pending != null) {
+				return pending.future();
+			}
+
+			promise = Futures.promise();
+			batch.put(idChapter, promise);
+
+			if (batch.size() >= maxBatchSize) {
+				full = batch;
+				batch = new LinkedHashMap<>();
+			} else if (batch.size() == 1) {
+				final Map<Long, Promise<Either<E, Chapter>>> scheduled = batch;
+				scheduler.scheduleOnce(window, () -> flush(scheduled), ec);
+			}
+		}
+
+		if (full != null) {
+			dispatch(full);
+		}
+
+		return promise.future();
+	}
+
+	/**
+	 * Explicit batches go straight to the service
+	 */
+	@Override
+	public Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+		return srv.getChapters(idChapters);
+	}
+
+	/**
+	 * Sends the batch the timer was started for, unless it was already sent for being full
+	 */
+	private void flush(Map<Long, Promise<Either<E, Chapter>>> scheduled) {
+
+		synchronized (this) {
+			if (batch != scheduled) {
+				return;
+			}
+			batch = new LinkedHashMap<>();
+		}
+
+		dispatch(scheduled);
+	}
+
+	private void dispatch(Map<Long, Promise<Either<E, Chapter>>> promises) {
+
+		final List<Long> ids = new ArrayList<>(promises.keySet());
+		final Future<Either<E, List<Either<E, Chapter>>>> chapters;
+
+		final RequestContext previous = RequestContext.attach(null);
+		try {
+			chapters = srv.getChapters(ids);
+		} catch (RuntimeException e) {
+			promises.values().forEach(p -> p.tryFailure(e));
+			return;
+		} finally {
+			RequestContext.restore(previous);
+		}
+
+		chapters.onComplete(t -> {
+			complete(ids, promises, t);
+			return BoxedUnit.UNIT;
+		}, SameThreadExecutionContext.INSTANCE);
+	}
+
+	/**
+	 * Completes the promise of each id with its chapter in the batch result t
+	 */
+	static <E> void complete(List<Long> ids, Map<Long, Promise<Either<E, Chapter>>> promises,
+							 Try<Either<E, List<Either<E, Chapter>>>> t) {
+
+		if (t.isFailure()) {
+			promises.values().forEach(p -> p.tryFailure(t.failed().get()));
+			return;
+		}
+
+		final Either<E, List<Either<E, Chapter>>> result = t.get();
+
+		if (result.isLeft()) {
+			final Either<E, Chapter> left = new Left<>(result.left().get());
+			promises.values().forEach(p -> p.trySuccess(left));
+			return;
+		}
+
+		final List<Either<E, Chapter>> chapters = result.right().get();
+
+		for (int i = 0; i < ids.size(); i++) {
+			final Promise<Either<E, Chapter>> promise = promises.get(ids.get(i));
+			if (i < chapters.size()) {
+				promise.trySuccess(chapters.get(i));
+			} else {
+				promise.tryFailure(new IllegalStateException("No chapter in the batch for " + ids.get(i)));
+			}
+		}
+	}
+
+}
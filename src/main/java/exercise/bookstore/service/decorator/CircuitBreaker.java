@@ -0,0 +1,173 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import akka.dispatch.Futures;
+import akka.pattern.CircuitBreakerOpenException;
+import monad.MonadFutEither;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.FiniteDuration;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import util.SameThreadExecutionContext;
+
+/**
+ * Lock-free circuit breaker for calls returning Future<Either<E, T>>.
+ *
+ * CLOSED: calls go through, and maxFailures consecutive failures open the circuit.
+ * OPEN: calls return the error for a CircuitBreakerOpenException at once, without calling
+ * the service or using any executor, until resetTimeout has passed. The rejection is
+ * built once per breaker, so rejecting costs no allocation.
+ * HALF_OPEN: a single trial call goes through; it closes the circuit if it succeeds
+ * and opens it again if it fails.
+ *
+ * Every call is limited to callTimeout, and a timeout counts as a failure, so a hung
+ * trial cannot keep the circuit half open. Each trial carries the generation it was
+ * started in: only that call moves the circuit out of HALF_OPEN, and late results of
+ * calls started while CLOSED are ignored once the circuit has opened. The state is
+ * updated before the caller sees the result.
+ */
+public final class CircuitBreaker<E> {
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private static final int CLOSED = 0;
+	private static final int OPEN = 1;
+	private static final int HALF_OPEN = 2;
+
+	private static final long REJECTED = -1;
+	private static final long CLOSED_CALL = 0;
+
+	private final MonadFutEither<E> m;
+
+	private final int maxFailures;
+
+	private final FiniteDuration callTimeout;
+
+	private final long resetTimeoutNanos;
+
+	private final Predicate<E> isFailure;
+
+	private final AtomicInteger state = new AtomicInteger(CLOSED);
+
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private final AtomicLong trials = new AtomicLong();
+
+	private final Future<Either<E, Object>> rejected;
+
+	private volatile long openedAt;
+
+	public CircuitBreaker(MonadFutEither<E> m, int maxFailures, FiniteDuration callTimeout, FiniteDuration resetTimeout) {
+		this(m, maxFailures, callTimeout, resetTimeout, e -> true);
+	}
+
+	/**
+	 * @param isFailure the Lefts that count as failures (exceptions and timeouts always do),
+	 *                  e.g. to ignore "not found" answers of a healthy service
+	 */
+	public CircuitBreaker(MonadFutEither<E> m, int maxFailures, FiniteDuration callTimeout, FiniteDuration resetTimeout, Predicate<E> isFailure) {
+		this.m = m;
+		this.maxFailures = maxFailures;
+		this.callTimeout = callTimeout;
+		this.resetTimeoutNanos = resetTimeout.toNanos();
+		this.isFailure = isFailure;
+		this.rejected = m.raiseError(m.errorFrom(new CircuitBreakerOpenException(resetTimeout, "Circuit breaker is open")));
+	}
+
+	public State state() {
+
+		return State.values()[state.get()];
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> Future<Either<E, T>> call(Supplier<Future<Either<E, T>>> call) {
+
+		final long permit = tryAcquire();
+
+		if (permit == REJECTED) {
+			return (Future<Either<E, T>>) (Future<?>) rejected;
+		}
+
+		final Future<Either<E, T>> called;
+
+		try {
+			called = call.get();
+		} catch (RuntimeException e) {
+			onResult(permit, false);
+			return m.raiseError(m.errorFrom(e));
+		}
+
+		final Promise<Either<E, T>> result = Futures.promise();
+
+		m.timeout(called, callTimeout).onComplete(t -> {
+			final boolean timedOut = !called.isCompleted();
+			onResult(permit, !timedOut && t.isSuccess() && !(t.get().isLeft() && isFailure.test(t.get().left().get())));
+			result.complete(t);
+			return BoxedUnit.UNIT;
+		}, SameThreadExecutionContext.INSTANCE);
+
+		return result.future();
+	}
+
+	/**
+	 * Only the caller that moves the circuit to HALF_OPEN takes a generation, so no racer
+	 * can change it under the trial.
+	 *
+	 * @return REJECTED, CLOSED_CALL or the generation of the trial that has just been let through
+	 */
+	private long tryAcquire() {
+
+		switch (state.get()) {
+			case CLOSED:
+				return CLOSED_CALL;
+			case OPEN:
+				if (System.nanoTime() - openedAt >= resetTimeoutNanos && state.compareAndSet(OPEN, HALF_OPEN)) {
+					return trials.incrementAndGet();
+				}
+				return REJECTED;
+			default:
+				return REJECTED;
+		}
+	}
+
+	private void onResult(long permit, boolean success) {
+
+		if (permit == CLOSED_CALL) {
+			if (success) {
+				onClosedSuccess();
+			} else {
+				onClosedFailure();
+			}
+		} else if (trials.get() == permit) {
+			if (success) {
+				failures.set(0);
+				state.compareAndSet(HALF_OPEN, CLOSED);
+			} else {
+				openedAt = System.nanoTime();
+				state.compareAndSet(HALF_OPEN, OPEN);
+			}
+		}
+	}
+
+	private void onClosedSuccess() {
+
+		if (state.get() == CLOSED && failures.get() != 0) {
+			failures.set(0);
+		}
+	}
+
+	private void onClosedFailure() {
+
+		if (state.get() == CLOSED && failures.incrementAndGet() >= maxFailures) {
+			openedAt = System.nanoTime();
+			if (state.compareAndSet(CLOSED, OPEN)) {
+				failures.set(0);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.List;
+
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import scala.concurrent.Future;
+import scala.util.Either;
+
+/**
+ * Services guarded by a circuit breaker. Use one breaker per downstream dependency.
+ */
+public final class CircuitBreakerServices {
+
+	private CircuitBreakerServices(){}
+
+	public static <E> ServiceBook<E> book(ServiceBook<E> srv, CircuitBreaker<E> breaker) {
+
+		return bookId -> breaker.call(() -> srv.getBook(bookId));
+	}
+
+	/**
+	 * Batches go through the same breaker: a failed batch counts as one failure
+	 */
+	public static <E> ServiceChapter<E> chapter(ServiceChapter<E> srv, CircuitBreaker<E> breaker) {
+
+		return new ServiceChapter<E>() {
+
+			@Override
+			public Future<Either<E, Chapter>> getChapter(long idChapter) {
+
+				return breaker.call(() -> srv.getChapter(idChapter));
+			}
+
+			@Override
+			public Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+				return breaker.call(() -> srv.getChapters(idChapters));
+			}
+		};
+	}
+
+	public static <E> ServiceAuthor<E> author(ServiceAuthor<E> srv, CircuitBreaker<E> breaker) {
+
+		return id -> breaker.call(() -> srv.getAuthor(id));
+	}
+
+	public static <E> ServiceSales<E> sales(ServiceSales<E> srv, CircuitBreaker<E> breaker) {
+
+		return bookId -> breaker.call(() -> srv.getSales(bookId));
+	}
+
+}
@@ -0,0 +1,69 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.List;
+
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import monad.HedgePolicy;
+import monad.MonadFutEither;
+import scala.concurrent.Future;
+import scala.util.Either;
+
+/**
+ * Services whose slow calls are hedged: both attempts go through the decorated service.
+ * Each decorator needs its own policy, as the policy learns the latencies of that service.
+ */
+public final class HedgedServices {
+
+	private HedgedServices(){}
+
+	public static <E> ServiceBook<E> book(ServiceBook<E> srv, MonadFutEither<E> m, HedgePolicy policy) {
+
+		return bookId -> m.hedge(policy, () -> srv.getBook(bookId));
+	}
+
+	/**
+	 * Batches go to srv.getChapters without hedging
+	 */
+	public static <E> ServiceChapter<E> chapter(ServiceChapter<E> srv, MonadFutEither<E> m, HedgePolicy policy) {
+
+		return chapter(srv, m, policy, null);
+	}
+
+	/**
+	 * Batches are hedged with batchPolicy, which learns the latencies of whole batches
+	 */
+	public static <E> ServiceChapter<E> chapter(ServiceChapter<E> srv, MonadFutEither<E> m, HedgePolicy policy, HedgePolicy batchPolicy) {
+
+		return new ServiceChapter<E>() {
+
+			@Override
+			public Future<Either<E, Chapter>> getChapter(long idChapter) {
+
+				return m.hedge(policy, () -> srv.getChapter(idChapter));
+			}
+
+			@Override
+			public Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+				return batchPolicy == null
+						? srv.getChapters(idChapters)
+						: m.hedge(batchPolicy, () -> srv.getChapters(idChapters));
+			}
+		};
+	}
+
+	public static <E> ServiceAuthor<E> author(ServiceAuthor<E> srv, MonadFutEither<E> m, HedgePolicy policy) {
+
+		return id -> m.hedge(policy, () -> srv.getAuthor(id));
+	}
+
+	public static <E> ServiceSales<E> sales(ServiceSales<E> srv, MonadFutEither<E> m, HedgePolicy policy) {
+
+		return bookId -> m.hedge(policy, () -> srv.getSales(bookId));
+	}
+
+}
@@ -0,0 +1,63 @@
+package exercise.bookstore.service.decorator;
+
+import java.util.List;
+
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import scala.concurrent.Future;
+import scala.util.Either;
+
+/**
+ * Services recording latency, outcomes and calls in flight under ServiceBook.getBook,
+ * ServiceChapter.getChapter, ServiceChapter.getChapters, ServiceAuthor.getAuthor and
+ * ServiceSales.getSales.
+ */
+public final class InstrumentedServices {
+
+	private InstrumentedServices(){}
+
+	public static <E> ServiceBook<E> book(ServiceBook<E> srv, MetricsRegistry registry) {
+
+		final StageMetrics metrics = registry.stage("ServiceBook.getBook");
+		return bookId -> metrics.measure(() -> srv.getBook(bookId));
+	}
+
+	public static <E> ServiceChapter<E> chapter(ServiceChapter<E> srv, MetricsRegistry registry) {
+
+		final StageMetrics metrics = registry.stage("ServiceChapter.getChapter");
+		final StageMetrics batchMetrics = registry.stage("ServiceChapter.getChapters");
+
+		return new ServiceChapter<E>() {
+
+			@Override
+			public Future<Either<E, Chapter>> getChapter(long idChapter) {
+
+				return metrics.measure(() -> srv.getChapter(idChapter));
+			}
+
+			@Override
+			public Future<Either<E, List<Either<E, Chapter>>>> getChapters(List<Long> idChapters) {
+
+				return batchMetrics.measure(() -> srv.getChapters(idChapters));
+			}
+		};
+	}
+
+	public static <E> ServiceAuthor<E> author(ServiceAuthor<E> srv, MetricsRegistry registry) {
+
+		final StageMetrics metrics = registry.stage("ServiceAuthor.getAuthor");
+		return id -> metrics.measure(() -> srv.getAuthor(id));
+	}
+
+	public static <E> ServiceSales<E> sales(ServiceSales<E> srv, MetricsRegistry registry) {
+
+		final StageMetrics metrics = registry.stage("ServiceSales.getSales");
+		return bookId -> metrics.measure(() -> srv.getSales(bookId));
+	}
+
+}
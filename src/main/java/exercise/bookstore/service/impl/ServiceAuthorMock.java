@@ -4,6 +4,7 @@ import errors.GenericError;
 import errors.impl.MyError;
 import exercise.bookstore.bean.Author;
 import exercise.bookstore.service.ServiceAuthor;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 import scala.util.Either;
 import scala.util.Left;
@@ -11,10 +12,22 @@ import scala.util.Right;
 
 public class ServiceAuthorMock extends ServiceBase implements ServiceAuthor<GenericError> {
 
+	public ServiceAuthorMock() {
+		super();
+	}
+
+	public ServiceAuthorMock(ExecutionContext ec) {
+		super(ec);
+	}
+
+	public ServiceAuthorMock(ExecutionContext ec, boolean coalesce) {
+		super(ec, coalesce);
+	}
+
 	@Override
 	public Future<Either<GenericError, Author>> getAuthor(String id) {		
 		
-		return createFuture( () -> findAuthor( id ) );
+		return createFuture( id, () -> findAuthor( id ) );
 		
 		
 	}
@@ -3,19 +3,125 @@ package exercise.bookstore.service.impl;
 import akka.dispatch.ExecutionContexts;
 import akka.dispatch.Futures;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
+import scala.concurrent.Promise;
 import scala.util.Either;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
 
 public abstract class ServiceBase {
 
+	private final ExecutionContext ec;
+
+	private final ConcurrentMap<Object, Future<?>> inFlight;
+
 	public ServiceBase() {
+		this(ExecutionContexts.global());
+	}
+
+	/**
+	 * @param ec where the service calls run, e.g. a pool for blocking calls or virtual threads
+	 */
+	public ServiceBase(ExecutionContext ec) {
+		this(ec, false);
+	}
+
+	/**
+	 * @param coalesce concurrent calls with the same key share a single in-flight call
+	 */
+	public ServiceBase(ExecutionContext ec, boolean coalesce) {
 		super();
+		this.ec = ec;
+		this.inFlight = coalesce ? new ConcurrentHashMap<>() : null;
 	}
 
+	/**
+	 * A call rejected by a bounded ec (see util.Bulkheads) is a failed future, i.e. a Left(RejectedError).
+	 * Futures.future would hand the rejection to ec.reportFailure and never complete.
+	 *
+	 * The call runs in the RequestContext of the caller, and is skipped if that request
+	 * is done (expired or cancelled) before the call starts. The promise is completed once
+	 * the previous context is back, so callbacks never run in the caller's context.
+	 */
 	protected <E, T> Future<Either<E, T>> createFuture(Callable <Either<E, T>> cont ) {
-		return Futures.future(
-				cont::call,
-				ExecutionContexts.global() 
-			);
+		final RequestContext context = RequestContext.current();
+		if (context != null && context.isDone()) {
+			return Futures.failed(context.failure());
+		}
+
+		final Promise<Either<E, T>> promise = Futures.promise();
+		try {
+			ec.execute(() -> {
+				if (context != null && context.isDone()) {
+					promise.failure(context.failure());
+					return;
+				}
+				final RequestContext previous = RequestContext.attach(context);
+				Either<E, T> result = null;
+				Throwable failure = null;
+				try {
+					result = cont.call();
+				} catch (Throwable t) {
+					failure = t;
+				} finally {
+					RequestContext.restore(previous);
+				}
+				if (failure != null) {
+					promise.failure(failure);
+				} else {
+					promise.success(result);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			promise.failure(e);
+		}
+		return promise.future();
+	}
+
+	/**
+	 * Like createFuture(cont), but while a call for key is in flight the callers get its future
+	 * instead of calling again. The key is removed when the call completes, so nothing is cached.
+	 *
+	 * The shared call serves several requests, so it runs without a RequestContext: a caller
+	 * whose request is done fails on its own, without failing the others.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <E, T> Future<Either<E, T>> createFuture(Object key, Callable <Either<E, T>> cont ) {
+
+		if (inFlight == null) {
+			return createFuture(cont);
+		}
+
+		final RequestContext context = RequestContext.current();
+		if (context != null && context.isDone()) {
+			return Futures.failed(context.failure());
+		}
+
+		final Promise<Either<E, T>> promise = Futures.promise();
+		final Future<Either<E, T>> shared = promise.future();
+		final Future<?> existing = inFlight.putIfAbsent(key, shared);
+
+		if (existing != null) {
+			return (Future<Either<E, T>>) existing;
+		}
+
+		final RequestContext previous = RequestContext.attach(null);
+		final Future<Either<E, T>> call;
+		try {
+			call = createFuture(cont);
+		} finally {
+			RequestContext.restore(previous);
+		}
+
+		call.onComplete(t -> {
+			inFlight.remove(key, shared);
+			return promise.complete(t);
+		}, SameThreadExecutionContext.INSTANCE);
+
+		return shared;
 	}
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import exercise.bookstore.bean.Book;
 import exercise.bookstore.service.ServiceBook;
 import java.util.Arrays;
 import java.util.List;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 import scala.util.Either;
 import scala.util.Left;
@@ -13,11 +14,23 @@ import scala.util.Right;
 
 public class ServiceBookMock extends ServiceBase implements ServiceBook<GenericError> {
 
+    public ServiceBookMock() {
+        super();
+    }
+
+    public ServiceBookMock(ExecutionContext ec) {
+        super(ec);
+    }
+
+    public ServiceBookMock(ExecutionContext ec, boolean coalesce) {
+        super(ec, coalesce);
+    }
+
 
     @Override
     public Future<Either<GenericError, Book>> getBook(final int bookId) {
 
-        return createFuture(() -> findBook(bookId));
+        return createFuture(bookId, () -> findBook(bookId));
     }
 
     public Either<GenericError, Book> findBook(int bookId) {
@@ -5,20 +5,53 @@ import errors.GenericError;
 import errors.impl.MyError;
 import exercise.bookstore.bean.Chapter;
 import exercise.bookstore.service.ServiceChapter;
+import java.util.ArrayList;
+import java.util.List;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
 
 public class ServiceChapterFutEitherMock extends ServiceBase implements ServiceChapter<GenericError> {
+
+	public ServiceChapterFutEitherMock() {
+		super();
+	}
+
+	public ServiceChapterFutEitherMock(ExecutionContext ec) {
+		super(ec);
+	}
+
+	public ServiceChapterFutEitherMock(ExecutionContext ec, boolean coalesce) {
+		super(ec, coalesce);
+	}
 	
 	@Override
 	public Future<Either<GenericError, Chapter>> getChapter(long idChapter) {
 		
-		return createFuture( () -> findChapter( idChapter ) );
+		return createFuture( idChapter, () -> findChapter( idChapter ) );
 		
 	}
 
+	@Override
+	public Future<Either<GenericError, List<Either<GenericError, Chapter>>>> getChapters(List<Long> idChapters) {
+
+		return createFuture( () -> findChapters( idChapters ) );
+	}
+
+	public Either<GenericError, List<Either<GenericError, Chapter>>> findChapters(List<Long> idChapters) {
+
+		final List<Either<GenericError, Chapter>> chapters = new ArrayList<>( idChapters.size() );
+
+		for ( Long idChapter : idChapters ) {
+
+			chapters.add( findChapter( idChapter ) );
+		}
+
+		return new Right<>( chapters );
+	}
+
 	public Either<GenericError, Chapter> findChapter(long idChapter) {
 
 		if ( Long.valueOf( idChapter ).equals(3005L) ) {
@@ -4,6 +4,7 @@ import errors.GenericError;
 import errors.impl.MyError;
 import exercise.bookstore.bean.Sales;
 import exercise.bookstore.service.ServiceSales;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 import scala.util.Either;
 import scala.util.Left;
@@ -11,11 +12,23 @@ import scala.util.Right;
 
 public class ServiceSalesMock extends ServiceBase implements ServiceSales<GenericError> {
 
+	public ServiceSalesMock() {
+		super();
+	}
+
+	public ServiceSalesMock(ExecutionContext ec) {
+		super(ec);
+	}
+
+	public ServiceSalesMock(ExecutionContext ec, boolean coalesce) {
+		super(ec, coalesce);
+	}
+
 
 	@Override
 	public Future<Either<GenericError, Sales>> getSales(int bookId) {
 		
-		return createFuture( () -> findSales( bookId ) );
+		return createFuture( bookId, () -> findSales( bookId ) );
 	}
 
 	public Either<GenericError, Sales> findSales( int bookId ) {
@@ -0,0 +1,42 @@
+package exercise.bookstore.service.simulation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * The latency of a simulated call, drawn anew for every call
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+	long nextNanos(ThreadLocalRandom random);
+
+	static LatencyDistribution fixed(FiniteDuration latency) {
+
+		final long nanos = latency.toNanos();
+		return random -> nanos;
+	}
+
+	/**
+	 * The usual shape of service latencies: most calls near the median and a long tail
+	 *
+	 * @param sigma of the underlying normal; 0.5 gives a p99 about 3 times the median
+	 */
+	static LatencyDistribution logNormal(FiniteDuration median, double sigma) {
+
+		final double mu = Math.log(median.toNanos());
+		return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+	}
+
+	/**
+	 * Usually fast, sometimes slow, as with cache misses or GC pauses
+	 *
+	 * @param slowFraction between 0 and 1
+	 */
+	static LatencyDistribution bimodal(LatencyDistribution fast, LatencyDistribution slow, double slowFraction) {
+
+		return random -> random.nextDouble() < slowFraction ? slow.nextNanos(random) : fast.nextNanos(random);
+	}
+
+}
@@ -0,0 +1,86 @@
+package exercise.bookstore.service.simulation;
+
+import akka.actor.Scheduler;
+import akka.dispatch.ExecutionContexts;
+import errors.GenericError;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.impl.ServiceSalesMock;
+import java.util.concurrent.TimeUnit;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.FiniteDuration;
+import util.Schedulers;
+
+/**
+ * The mock services with simulated latency, failures and throughput, for load tests and
+ * capacity planning. They answer what the mocks answer (book 4 still fails, and so on)
+ * when the profile does not inject an error.
+ *
+ * Calls complete on a dedicated timer with a 1ms tick, so latencies are rounded up to it.
+ * Each service has its own throughput limit. The answers are computed and the calls
+ * completed on the given ExecutionContext, the global one by default.
+ */
+public final class SimulatedServices {
+
+	private SimulatedServices(){}
+
+	private static final class Timer {
+
+		private static final Scheduler INSTANCE = Schedulers.create("simulated-services",
+				FiniteDuration.create(1, TimeUnit.MILLISECONDS), 512);
+	}
+
+	public static ServiceBook<GenericError> book(SimulationProfile profile) {
+
+		return book(profile, ExecutionContexts.global());
+	}
+
+	public static ServiceBook<GenericError> book(SimulationProfile profile, ExecutionContext ec) {
+
+		final ServiceBookMock mock = new ServiceBookMock();
+		final Simulator simulator = new Simulator(profile, Timer.INSTANCE, ec, "ServiceBook");
+		return bookId -> simulator.call(() -> mock.findBook(bookId));
+	}
+
+	public static ServiceChapter<GenericError> chapter(SimulationProfile profile) {
+
+		return chapter(profile, ExecutionContexts.global());
+	}
+
+	public static ServiceChapter<GenericError> chapter(SimulationProfile profile, ExecutionContext ec) {
+
+		final ServiceChapterFutEitherMock mock = new ServiceChapterFutEitherMock();
+		final Simulator simulator = new Simulator(profile, Timer.INSTANCE, ec, "ServiceChapter");
+		return idChapter -> simulator.call(() -> mock.findChapter(idChapter));
+	}
+
+	public static ServiceAuthor<GenericError> author(SimulationProfile profile) {
+
+		return author(profile, ExecutionContexts.global());
+	}
+
+	public static ServiceAuthor<GenericError> author(SimulationProfile profile, ExecutionContext ec) {
+
+		final ServiceAuthorMock mock = new ServiceAuthorMock();
+		final Simulator simulator = new Simulator(profile, Timer.INSTANCE, ec, "ServiceAuthor");
+		return id -> simulator.call(() -> mock.findAuthor(id));
+	}
+
+	public static ServiceSales<GenericError> sales(SimulationProfile profile) {
+
+		return sales(profile, ExecutionContexts.global());
+	}
+
+	public static ServiceSales<GenericError> sales(SimulationProfile profile, ExecutionContext ec) {
+
+		final ServiceSalesMock mock = new ServiceSalesMock();
+		final Simulator simulator = new Simulator(profile, Timer.INSTANCE, ec, "ServiceSales");
+		return bookId -> simulator.call(() -> mock.findSales(bookId));
+	}
+
+}
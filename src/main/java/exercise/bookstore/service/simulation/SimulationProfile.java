@@ -0,0 +1,88 @@
+package exercise.bookstore.service.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * How a simulated service behaves: its latency, how often it answers with a Left or fails
+ * with an exception instead of answering, and how many calls per second it can serve.
+ */
+public final class SimulationProfile {
+
+	private final LatencyDistribution latency;
+
+	private final double errorRate;
+
+	private final double exceptionRate;
+
+	private final double callsPerSecond;
+
+	private final long maxQueueNanos;
+
+	private SimulationProfile(LatencyDistribution latency, double errorRate, double exceptionRate,
+							  double callsPerSecond, long maxQueueNanos) {
+		this.latency = latency;
+		this.errorRate = errorRate;
+		this.exceptionRate = exceptionRate;
+		this.callsPerSecond = callsPerSecond;
+		this.maxQueueNanos = maxQueueNanos;
+	}
+
+	/**
+	 * No injected errors and no throughput limit
+	 */
+	public static SimulationProfile latency(LatencyDistribution latency) {
+
+		return new SimulationProfile(latency, 0, 0, 0, 0);
+	}
+
+	/**
+	 * @param errorRate fraction of calls answered with a Left, between 0 and 1
+	 */
+	public SimulationProfile withErrorRate(double errorRate) {
+
+		return new SimulationProfile(latency, errorRate, exceptionRate, callsPerSecond, maxQueueNanos);
+	}
+
+	/**
+	 * @param exceptionRate fraction of calls failing with an exception, between 0 and 1
+	 */
+	public SimulationProfile withExceptionRate(double exceptionRate) {
+
+		return new SimulationProfile(latency, errorRate, exceptionRate, callsPerSecond, maxQueueNanos);
+	}
+
+	/**
+	 * Calls beyond callsPerSecond wait for their turn, which adds to their latency;
+	 * a call that would wait longer than maxQueue is rejected (a Left(RejectedError))
+	 */
+	public SimulationProfile withThroughput(double callsPerSecond, FiniteDuration maxQueue) {
+
+		return new SimulationProfile(latency, errorRate, exceptionRate, callsPerSecond, maxQueue.toNanos());
+	}
+
+	LatencyDistribution latency() {
+		return latency;
+	}
+
+	double errorRate() {
+		return errorRate;
+	}
+
+	double exceptionRate() {
+		return exceptionRate;
+	}
+
+	/**
+	 * Nanoseconds between two calls at full throughput, 0 without a limit
+	 */
+	long intervalNanos() {
+		return callsPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / callsPerSecond);
+	}
+
+	long maxQueueNanos() {
+		return maxQueueNanos;
+	}
+
+}
@@ -0,0 +1,112 @@
+package exercise.bookstore.service.simulation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import akka.actor.Scheduler;
+import akka.dispatch.Futures;
+import errors.GenericError;
+import errors.impl.MyError;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.FiniteDuration;
+import scala.util.Either;
+import scala.util.Left;
+
+/**
+ * Completes each call of one simulated service after its simulated latency, on a timer:
+ * no thread waits, so thousands of slow calls cost only their timer entries. The answer
+ * is computed and the call completed on ec, so neither they nor the callers' callbacks
+ * hold up the timer thread.
+ *
+ * The throughput limit is a virtual queue: every call takes the next free slot,
+ * interval after the previous one, with a single CAS.
+ */
+final class Simulator {
+
+	private final SimulationProfile profile;
+
+	private final Scheduler scheduler;
+
+	private final ExecutionContext ec;
+
+	private final String name;
+
+	private final AtomicLong nextSlot = new AtomicLong(Long.MIN_VALUE);
+
+	Simulator(SimulationProfile profile, Scheduler scheduler, ExecutionContext ec, String name) {
+		this.profile = profile;
+		this.scheduler = scheduler;
+		this.ec = ec;
+		this.name = name;
+	}
+
+	<T> Future<Either<GenericError, T>> call(Callable<Either<GenericError, T>> answer) {
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final long queued = queue();
+
+		if (queued < 0) {
+			return Futures.failed(new RejectedExecutionException(name + " is over its throughput limit"));
+		}
+
+		final long delay = queued + Math.max(0, profile.latency().nextNanos(random));
+		final double outcome = random.nextDouble();
+		final Promise<Either<GenericError, T>> promise = Futures.promise();
+
+		final Runnable complete = () -> {
+			try {
+				if (outcome < profile.exceptionRate()) {
+					promise.failure(new RuntimeException("Simulated exception in " + name));
+				} else if (outcome < profile.exceptionRate() + profile.errorRate()) {
+					promise.success(new Left<>(new MyError("Simulated error in " + name)));
+				} else {
+					promise.success(answer.call());
+				}
+			} catch (Exception e) {
+				promise.failure(e);
+			}
+		};
+
+		if (delay == 0) {
+			ec.execute(complete);
+		} else {
+			scheduler.scheduleOnce(FiniteDuration.create(delay, TimeUnit.NANOSECONDS), complete, ec);
+		}
+
+		return promise.future();
+	}
+
+	/**
+	 * How long the call waits for its slot, -1 if longer than the maximum queue time
+	 */
+	private long queue() {
+
+		final long interval = profile.intervalNanos();
+
+		if (interval == 0) {
+			return 0;
+		}
+
+		final long now = System.nanoTime();
+
+		while (true) {
+			final long slot = nextSlot.get();
+			final long start = slot == Long.MIN_VALUE || slot - now < 0 ? now : slot;
+			final long wait = start - now;
+
+			if (wait > profile.maxQueueNanos()) {
+				return -1;
+			}
+
+			if (nextSlot.compareAndSet(slot, start + interval)) {
+				return wait;
+			}
+		}
+	}
+
+}
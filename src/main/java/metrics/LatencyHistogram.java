@@ -0,0 +1,141 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: 16 buckets per power
+ * of two, so any recorded value is reported within about 6%.
+ *
+ * record() does not allocate and only does one atomic increment, so it can be used
+ * on hot paths from many threads.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	public void record(long nanos) {
+
+		counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket holding that percentile, 0 if nothing was recorded
+	 */
+	public long valueAtPercentile(double percentile) {
+
+		return snapshot().valueAtPercentile(percentile);
+	}
+
+	public long count() {
+
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Halves every bucket, so older samples weigh less than new ones
+	 */
+	public void decay() {
+
+		for (int i = 0; i < BUCKETS; i++) {
+			long current;
+			do {
+				current = counts.get(i);
+			} while (current > 0 && !counts.compareAndSet(i, current, current >>> 1));
+		}
+	}
+
+	public Snapshot snapshot() {
+
+		final long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy);
+	}
+
+	static int indexOf(long value) {
+
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+
+		return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+	}
+
+	static long upperBoundOf(int index) {
+
+		if (index < SUB_COUNT) {
+			return index;
+		}
+
+		final int shift = index / SUB_COUNT - 1;
+		final long sub = index % SUB_COUNT;
+
+		return ((SUB_COUNT + sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Counts copied at one point in time
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+
+		private final long total;
+
+		private Snapshot(long[] counts) {
+			this.counts = counts;
+			long sum = 0;
+			for (long count : counts) {
+				sum += count;
+			}
+			this.total = sum;
+		}
+
+		public long count() {
+			return total;
+		}
+
+		public long valueAtPercentile(double percentile) {
+
+			if (total == 0) {
+				return 0;
+			}
+
+			final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+			long seen = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return upperBoundOf(i);
+				}
+			}
+
+			return upperBoundOf(counts.length - 1);
+		}
+
+		public long max() {
+
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] > 0) {
+					return upperBoundOf(i);
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The StageMetrics of an application by stage name
+ */
+public final class MetricsRegistry {
+
+	private final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<>();
+
+	/**
+	 * The metrics of the stage, created the first time; keep it rather than looking it up on every call
+	 */
+	public StageMetrics stage(String name) {
+
+		final StageMetrics existing = stages.get(name);
+		return existing != null ? existing : stages.computeIfAbsent(name, StageMetrics::new);
+	}
+
+	/**
+	 * Every stage at one point in time, by name
+	 */
+	public List<StageMetrics.Snapshot> snapshot() {
+
+		final List<StageMetrics.Snapshot> snapshots = new ArrayList<>(stages.size());
+		for (StageMetrics stage : stages.values()) {
+			snapshots.add(stage.snapshot());
+		}
+		snapshots.sort(Comparator.comparing(StageMetrics.Snapshot::name));
+		return snapshots;
+	}
+
+	/**
+	 * One line per stage, as in StageMetrics.Snapshot.toString()
+	 */
+	public String export() {
+
+		final StringBuilder builder = new StringBuilder();
+		for (StageMetrics.Snapshot snapshot : snapshot()) {
+			builder.append(snapshot).append('\n');
+		}
+		return builder.toString();
+	}
+
+}
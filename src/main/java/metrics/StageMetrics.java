@@ -0,0 +1,197 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import scala.concurrent.Future;
+import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Try;
+import util.SameThreadExecutionContext;
+
+/**
+ * Latency, outcomes (Right, Left or exception) and calls in flight of one named stage.
+ *
+ * Recording only touches the histogram and LongAdders, so it does not allocate; a future
+ * that is still running needs one small callback to remember when it started.
+ */
+public final class StageMetrics {
+
+	private final String name;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final LongAdder rights = new LongAdder();
+
+	private final LongAdder lefts = new LongAdder();
+
+	private final LongAdder exceptions = new LongAdder();
+
+	private final LongAdder inFlight = new LongAdder();
+
+	StageMetrics(String name) {
+		this.name = name;
+	}
+
+	public String name() {
+
+		return name;
+	}
+
+	/**
+	 * Records the future returned by call from now until it completes
+	 */
+	public <E, T> Future<Either<E, T>> measure(Supplier<Future<Either<E, T>>> call) {
+
+		final long start = start();
+		final Future<Either<E, T>> result;
+
+		try {
+			result = call.get();
+		} catch (Throwable e) {
+			failed(start);
+			throw e;
+		}
+
+		return end(start, result);
+	}
+
+	/**
+	 * Counts a call in flight, returning the start time to give to end or failed
+	 */
+	public long start() {
+
+		inFlight.increment();
+		return System.nanoTime();
+	}
+
+	@SuppressWarnings("unchecked")
+	public <E, T> Future<Either<E, T>> end(long start, Future<Either<E, T>> result) {
+
+		if (result.isCompleted()) {
+			record(start, result.value().get());
+		} else {
+			((Future<Either<Object, Object>>) (Future<?>) result).onComplete(new Recorder(this, start), SameThreadExecutionContext.INSTANCE);
+		}
+		return result;
+	}
+
+	/**
+	 * A call that threw instead of returning a future
+	 */
+	public void failed(long start) {
+
+		latency.record(System.nanoTime() - start);
+		exceptions.increment();
+		inFlight.decrement();
+	}
+
+	/**
+	 * Records a call that started at start and has completed with t
+	 */
+	public void record(long start, Try<? extends Either<?, ?>> t) {
+
+		latency.record(System.nanoTime() - start);
+
+		if (t.isFailure()) {
+			exceptions.increment();
+		} else if (t.get().isRight()) {
+			rights.increment();
+		} else {
+			lefts.increment();
+		}
+
+		inFlight.decrement();
+	}
+
+	public Snapshot snapshot() {
+
+		return new Snapshot(name, rights.sum(), lefts.sum(), exceptions.sum(), inFlight.sum(), latency.snapshot());
+	}
+
+	private static final class Recorder extends AbstractFunction1<Try<Either<Object, Object>>, BoxedUnit> {
+
+		private final StageMetrics metrics;
+
+		private final long start;
+
+		private Recorder(StageMetrics metrics, long start) {
+			this.metrics = metrics;
+			this.start = start;
+		}
+
+		@Override
+		public BoxedUnit apply(Try<Either<Object, Object>> t) {
+
+			metrics.record(start, t);
+			return BoxedUnit.UNIT;
+		}
+	}
+
+	/**
+	 * The metrics of a stage at one point in time; latencies in nanoseconds
+	 */
+	public static final class Snapshot {
+
+		private final String name;
+
+		private final long rights;
+
+		private final long lefts;
+
+		private final long exceptions;
+
+		private final long inFlight;
+
+		private final LatencyHistogram.Snapshot latency;
+
+		private Snapshot(String name, long rights, long lefts, long exceptions, long inFlight, LatencyHistogram.Snapshot latency) {
+			this.name = name;
+			this.rights = rights;
+			this.lefts = lefts;
+			this.exceptions = exceptions;
+			this.inFlight = inFlight;
+			this.latency = latency;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public long rights() {
+			return rights;
+		}
+
+		public long lefts() {
+			return lefts;
+		}
+
+		public long exceptions() {
+			return exceptions;
+		}
+
+		public long inFlight() {
+			return inFlight;
+		}
+
+		public LatencyHistogram.Snapshot latency() {
+			return latency;
+		}
+
+		@Override
+		public String toString() {
+			return name + " rights=" + rights + " lefts=" + lefts + " exceptions=" + exceptions
+					+ " inFlight=" + inFlight
+					+ " p50=" + micros(latency.valueAtPercentile(50)) + "us"
+					+ " p99=" + micros(latency.valueAtPercentile(99)) + "us"
+					+ " max=" + micros(latency.max()) + "us";
+		}
+
+		private static long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+
+}
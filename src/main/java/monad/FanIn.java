@@ -0,0 +1,396 @@
+package monad;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import akka.dispatch.Futures;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Right;
+import scala.util.Try;
+import scala.util.control.NonFatal;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+import util.TraceContext;
+
+/**
+ * Waits for several futures with a single counter and a pre-sized array of results.
+ * It completes with the first Left (or failure) without waiting for the rest.
+ *
+ * In bounded mode the futures are started from a list of items, keeping at most
+ * maxInFlight of them running: every completion starts the next item.
+ * The next item is started on the thread that completed the previous one, so
+ * f must only start the call (e.g. a Service method) and never block. It runs in the
+ * RequestContext and TraceContext that were current when the FanIn was created.
+ *
+ * In accumulating mode it waits for every future (or starts every item) and puts all
+ * the errors together, in input order, collecting them on a lock-free stack.
+ *
+ * In settled mode it waits for every future and completes with each of their Eithers.
+ */
+public final class FanIn<E, R> {
+
+	private final Promise<Either<E, R>> promise = Futures.promise();
+
+	private final Object[] results;
+
+	private final AtomicInteger pending;
+
+	private final Function<Throwable, E> errorFrom;
+
+	private final Function<Object[], R> finish;
+
+	private final Object[] items;
+
+	private final Function<Object, Future<Either<E, Object>>> start;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final Function<List<E>, E> combine;
+
+	private final boolean settled;
+
+	private final AtomicReference<Failed<E>> errors = new AtomicReference<>();
+
+	private final RequestContext context = RequestContext.current();
+
+	private final TraceContext trace = TraceContext.current();
+
+	private FanIn(int size,
+				  Function<Throwable, E> errorFrom,
+				  Function<Object[], R> finish,
+				  Object[] items,
+				  Function<Object, Future<Either<E, Object>>> start,
+				  Function<List<E>, E> combine,
+				  boolean settled) {
+		this.results = new Object[size];
+		this.pending = new AtomicInteger(size);
+		this.errorFrom = errorFrom;
+		this.finish = finish;
+		this.items = items;
+		this.start = start;
+		this.combine = combine;
+		this.settled = settled;
+	}
+
+	public static <E, R> Future<Either<E, R>> all( List<? extends Future<? extends Either<E, ?>>> froms,
+												   Function<Throwable, E> errorFrom,
+												   Function<Object[], R> finish ) {
+
+		return subscribeAll(froms, errorFrom, finish, null);
+	}
+
+	/**
+	 * Waits for all the futures; if any of them fails, combine gets every error in input order
+	 */
+	public static <E, R> Future<Either<E, R>> accumulating( List<? extends Future<? extends Either<E, ?>>> froms,
+															Function<Throwable, E> errorFrom,
+															Function<List<E>, E> combine,
+															Function<Object[], R> finish ) {
+
+		return subscribeAll(froms, errorFrom, finish, combine);
+	}
+
+	/**
+	 * Waits for all the futures and completes with the Either of each one, in input order.
+	 * A future that failed gets the Left of errorFrom; with a null errorFrom the first
+	 * failure fails the result instead.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E, T> Future<Either<E, List<Either<E, T>>>> settled( List<Future<Either<E, T>>> froms,
+																	   Function<Throwable, E> errorFrom ) {
+
+		final int size = froms.size();
+
+		if (size == 0) {
+			return Futures.successful(new Right<>(new ArrayList<>(0)));
+		}
+
+		final FanIn<E, List<Either<E, T>>> fanIn = new FanIn<>(size, errorFrom, FanIn::eithers, null, null, null, true);
+
+		final Iterator<Future<Either<E, T>>> i = froms.iterator();
+
+		for (int index = 0; index < size && !fanIn.promise.isCompleted(); index++) {
+			fanIn.subscribe(index, (Future<Either<E, Object>>) (Future<?>) i.next());
+		}
+
+		return fanIn.promise.future();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E, T> List<Either<E, T>> eithers(Object[] results) {
+
+		final List<Either<E, T>> eithers = new ArrayList<>(results.length);
+		for (Object result : results) {
+			eithers.add((Either<E, T>) result);
+		}
+		return eithers;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E, R> Future<Either<E, R>> subscribeAll( List<? extends Future<? extends Either<E, ?>>> froms,
+															 Function<Throwable, E> errorFrom,
+															 Function<Object[], R> finish,
+															 Function<List<E>, E> combine ) {
+
+		final int size = froms.size();
+
+		if (size == 0) {
+			return Futures.successful(new Right<>(finish.apply(new Object[0])));
+		}
+
+		final FanIn<E, R> fanIn = new FanIn<>(size, errorFrom, finish, null, null, combine, false);
+
+		final Iterator<? extends Future<? extends Either<E, ?>>> i = froms.iterator();
+
+		for (int index = 0; index < size && !fanIn.promise.isCompleted(); index++) {
+			fanIn.subscribe(index, (Future<Either<E, Object>>) i.next());
+		}
+
+		return fanIn.promise.future();
+	}
+
+	@SafeVarargs
+	public static <E> Future<Either<E, Object[]>> array( Function<Throwable, E> errorFrom, Future<? extends Either<E, ?>>... froms ) {
+
+		final List<Future<? extends Either<E, ?>>> l = new ArrayList<>(froms.length);
+
+		for (Future<? extends Either<E, ?>> from : froms) {
+			l.add(from);
+		}
+
+		return all(l, errorFrom, Function.identity());
+	}
+
+	public static <E, A, R> Future<Either<E, R>> bounded( List<A> l,
+												   int maxInFlight,
+												   Function<A, ? extends Future<? extends Either<E, ?>>> f,
+												   Function<Throwable, E> errorFrom,
+												   Function<Object[], R> finish ) {
+
+		return startBounded(l, maxInFlight, f, errorFrom, finish, null);
+	}
+
+	/**
+	 * Like bounded, but every item is started and combine gets every error in input order
+	 */
+	public static <E, A, R> Future<Either<E, R>> boundedAccumulating( List<A> l,
+															   int maxInFlight,
+															   Function<A, ? extends Future<? extends Either<E, ?>>> f,
+															   Function<Throwable, E> errorFrom,
+															   Function<List<E>, E> combine,
+															   Function<Object[], R> finish ) {
+
+		return startBounded(l, maxInFlight, f, errorFrom, finish, combine);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E, A, R> Future<Either<E, R>> startBounded( List<A> l,
+														 int maxInFlight,
+														 Function<A, ? extends Future<? extends Either<E, ?>>> f,
+														 Function<Throwable, E> errorFrom,
+														 Function<Object[], R> finish,
+														 Function<List<E>, E> combine ) {
+
+		final Object[] items = l.toArray();
+
+		if (items.length == 0) {
+			return Futures.successful(new Right<>(finish.apply(new Object[0])));
+		}
+
+		final FanIn<E, R> fanIn = new FanIn<>(items.length, errorFrom, finish, items,
+				item -> (Future<Either<E, Object>>) f.apply((A) item), combine, false);
+
+		final int workers = Math.min(maxInFlight, items.length);
+
+		for (int worker = 0; worker < workers; worker++) {
+			fanIn.pump();
+		}
+
+		return fanIn.promise.future();
+	}
+
+	/**
+	 * Starts items until one of them is still running. Already completed results are
+	 * consumed in the loop, so long runs of completed futures do not grow the stack.
+	 */
+	private void pump() {
+
+		while (!promise.isCompleted()) {
+
+			final int index = next.getAndIncrement();
+
+			if (index >= items.length) {
+				return;
+			}
+
+			Future<Either<E, Object>> from;
+
+			final RequestContext previous = RequestContext.attach(context);
+			final TraceContext previousTrace = TraceContext.attach(trace);
+			try {
+				from = start.apply(items[index]);
+			} catch (Throwable e) {
+				if (!NonFatal.apply(e)) {
+					throw e;
+				}
+				from = Futures.successful(new Left<>(errorFrom.apply(e)));
+			} finally {
+				TraceContext.restore(previousTrace);
+				RequestContext.restore(previous);
+			}
+
+			if (!from.isCompleted()) {
+				from.onComplete(new Slot(index), SameThreadExecutionContext.INSTANCE);
+				return;
+			}
+
+			complete(index, from.value().get());
+		}
+	}
+
+	private void subscribe(int index, Future<Either<E, Object>> from) {
+
+		if (from.isCompleted()) {
+			complete(index, from.value().get());
+		} else {
+			from.onComplete(new Slot(index), SameThreadExecutionContext.INSTANCE);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void complete(int index, Try<Either<E, Object>> t) {
+
+		if (promise.isCompleted()) {
+			return;
+		}
+
+		if (combine != null) {
+			accumulate(index, t);
+			return;
+		}
+
+		if (settled) {
+			settle(index, t);
+			return;
+		}
+
+		if (t.isFailure()) {
+			promise.trySuccess(new Left<>(errorFrom.apply(((Failure<?>) t).exception())));
+			return;
+		}
+
+		final Either<E, Object> either = t.get();
+
+		if (either.isLeft()) {
+			promise.trySuccess((Either<E, R>) (Either<E, ?>) either);
+			return;
+		}
+
+		results[index] = either.right().get();
+
+		if (pending.decrementAndGet() == 0) {
+			promise.trySuccess(new Right<>(finish.apply(results)));
+		}
+	}
+
+	private void settle(int index, Try<Either<E, Object>> t) {
+
+		if (t.isFailure() && errorFrom == null) {
+			promise.tryFailure(((Failure<?>) t).exception());
+			return;
+		}
+
+		results[index] = t.isFailure() ? new Left<>(errorFrom.apply(((Failure<?>) t).exception())) : t.get();
+
+		if (pending.decrementAndGet() == 0) {
+			promise.trySuccess(new Right<>(finish.apply(results)));
+		}
+	}
+
+	private void accumulate(int index, Try<Either<E, Object>> t) {
+
+		if (t.isFailure()) {
+			push(index, errorFrom.apply(((Failure<?>) t).exception()));
+		} else if (t.get().isLeft()) {
+			push(index, t.get().left().get());
+		} else {
+			results[index] = t.get().right().get();
+		}
+
+		if (pending.decrementAndGet() != 0) {
+			return;
+		}
+
+		final Failed<E> failed = errors.get();
+
+		if (failed == null) {
+			promise.trySuccess(new Right<>(finish.apply(results)));
+			return;
+		}
+
+		final List<Failed<E>> all = new ArrayList<>();
+		for (Failed<E> node = failed; node != null; node = node.next) {
+			all.add(node);
+		}
+		all.sort(Comparator.comparingInt(node -> node.index));
+
+		final List<E> inOrder = new ArrayList<>(all.size());
+		for (Failed<E> node : all) {
+			inOrder.add(node.error);
+		}
+
+		promise.trySuccess(new Left<>(combine.apply(inOrder)));
+	}
+
+	private void push(int index, E error) {
+
+		Failed<E> head;
+		Failed<E> node;
+		do {
+			head = errors.get();
+			node = new Failed<>(index, error, head);
+		} while (!errors.compareAndSet(head, node));
+	}
+
+	private static final class Failed<E> {
+
+		private final int index;
+		private final E error;
+		private final Failed<E> next;
+
+		private Failed(int index, E error, Failed<E> next) {
+			this.index = index;
+			this.error = error;
+			this.next = next;
+		}
+	}
+
+	private final class Slot extends AbstractFunction1<Try<Either<E, Object>>, BoxedUnit> {
+
+		private final int index;
+
+		Slot(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public BoxedUnit apply(Try<Either<E, Object>> t) {
+			complete(index, t);
+			if (items != null) {
+				pump();
+			}
+			return BoxedUnit.UNIT;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package monad;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.LatencyHistogram;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * When MonadFutEither.hedge starts a second attempt: once the first one has taken longer
+ * than a percentile of the latencies seen so far. Keep one policy per service call, as
+ * it learns that call's latencies.
+ *
+ * Extra attempts are taken from a RetryBudget, e.g. new RetryBudget(0.05, 10) allows
+ * about 5% more calls.
+ */
+public final class HedgePolicy {
+
+	private static final int SAMPLES_PER_UPDATE = 128;
+
+	private static final long SAMPLES_BEFORE_DECAY = 10_000;
+
+	private final double percentile;
+
+	private final long minDelayNanos;
+
+	private final long maxDelayNanos;
+
+	private final RetryBudget budget;
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	private final AtomicLong samples = new AtomicLong();
+
+	private volatile long delayNanos;
+
+	private HedgePolicy(double percentile, long initialDelayNanos, long minDelayNanos, long maxDelayNanos, RetryBudget budget) {
+		this.percentile = percentile;
+		this.delayNanos = initialDelayNanos;
+		this.minDelayNanos = minDelayNanos;
+		this.maxDelayNanos = maxDelayNanos;
+		this.budget = budget;
+	}
+
+	/**
+	 * @param percentile e.g. 95 to hedge the slowest 5% of the calls
+	 * @param initialDelay used until enough latencies have been seen
+	 */
+	public static HedgePolicy atPercentile(double percentile, FiniteDuration initialDelay) {
+
+		return new HedgePolicy(percentile, initialDelay.toNanos(), 0, Long.MAX_VALUE, new RetryBudget(0.1, 10));
+	}
+
+	public HedgePolicy withBounds(FiniteDuration minDelay, FiniteDuration maxDelay) {
+
+		return new HedgePolicy(percentile, delayNanos, minDelay.toNanos(), maxDelay.toNanos(), budget);
+	}
+
+	public HedgePolicy withBudget(RetryBudget budget) {
+
+		return new HedgePolicy(percentile, delayNanos, minDelayNanos, maxDelayNanos, budget);
+	}
+
+	public FiniteDuration delay() {
+
+		return FiniteDuration.create(delayNanos, TimeUnit.NANOSECONDS);
+	}
+
+	RetryBudget budget() {
+		return budget;
+	}
+
+	void record(long latencyNanos) {
+
+		latencies.record(latencyNanos);
+
+		final long seen = samples.incrementAndGet();
+
+		if (seen % SAMPLES_PER_UPDATE == 0) {
+			final long atPercentile = latencies.valueAtPercentile(percentile);
+			delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, atPercentile));
+			if (seen % SAMPLES_BEFORE_DECAY < SAMPLES_PER_UPDATE) {
+				latencies.decay();
+			}
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package monad;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import akka.actor.Cancellable;
+import akka.dispatch.Futures;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Try;
+import scala.util.control.NonFatal;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+import util.Schedulers;
+import util.TraceContext;
+
+/**
+ * The result of a hedged call: a promise that is also the timer task starting the
+ * second attempt on ec. It completes with the first Right; an error only wins when no
+ * other attempt is still running.
+ *
+ * Both attempts run in the RequestContext and TraceContext of the caller; there is no
+ * second attempt once that request is done.
+ *
+ * Every attempt records its latency once. An attempt that loses to a Right is recorded
+ * at its elapsed time when the Right arrives, so hung calls still raise the delay.
+ */
+@SuppressWarnings("serial")
+final class Hedging<E, T> extends DefaultPromise<Either<E, T>> implements Runnable {
+
+	private final HedgePolicy policy;
+
+	private final Supplier<Future<Either<E, T>>> call;
+
+	private final Function<Throwable, E> errorFrom;
+
+	private final ExecutionContext ec;
+
+	private final RequestContext context = RequestContext.current();
+
+	private final TraceContext trace = TraceContext.current();
+
+	private final AtomicInteger running = new AtomicInteger();
+
+	private volatile Cancellable timer;
+
+	private volatile Attempt first;
+
+	private volatile Attempt hedged;
+
+	private Hedging(HedgePolicy policy, Supplier<Future<Either<E, T>>> call, Function<Throwable, E> errorFrom, ExecutionContext ec) {
+		this.policy = policy;
+		this.call = call;
+		this.errorFrom = errorFrom;
+		this.ec = ec;
+	}
+
+	/**
+	 * @param ec where the second attempt runs; the timer only dispatches it
+	 */
+	static <E, T> Future<Either<E, T>> of(HedgePolicy policy, Supplier<Future<Either<E, T>>> call, Function<Throwable, E> errorFrom, ExecutionContext ec) {
+
+		final Hedging<E, T> hedging = new Hedging<>(policy, call, errorFrom, ec);
+
+		policy.budget().deposit();
+		hedging.first = hedging.attempt();
+
+		if (!hedging.isCompleted()) {
+			hedging.timer = Schedulers.shared().scheduleOnce(policy.delay(), hedging, ec);
+			if (hedging.isCompleted()) {
+				hedging.timer.cancel();
+			}
+		}
+
+		return hedging;
+	}
+
+	@Override
+	public void run() {
+
+		if (!isCompleted() && (context == null || !context.isDone()) && policy.budget().tryWithdraw()) {
+			hedged = attempt();
+			if (isCompleted()) {
+				hedged.record();
+			}
+		}
+	}
+
+	private Attempt attempt() {
+
+		running.incrementAndGet();
+
+		final Attempt attempt = new Attempt(System.nanoTime());
+
+		Future<Either<E, T>> result;
+
+		final RequestContext previous = RequestContext.attach(context);
+		final TraceContext previousTrace = TraceContext.attach(trace);
+		try {
+			result = call.get();
+		} catch (Throwable e) {
+			if (!NonFatal.apply(e)) {
+				throw e;
+			}
+			result = Futures.successful(new Left<>(errorFrom.apply(e)));
+		} finally {
+			TraceContext.restore(previousTrace);
+			RequestContext.restore(previous);
+		}
+
+		result.onComplete(attempt, SameThreadExecutionContext.INSTANCE);
+		return attempt;
+	}
+
+	/**
+	 * Records the attempts that lost to a Right at their elapsed time
+	 */
+	private void recordRunning() {
+
+		final Attempt f = first;
+		final Attempt h = hedged;
+
+		if (f != null) {
+			f.record();
+		}
+		if (h != null) {
+			h.record();
+		}
+	}
+
+	private final class Attempt extends AbstractFunction1<Try<Either<E, T>>, BoxedUnit> {
+
+		private final long start;
+
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		private Attempt(long start) {
+			this.start = start;
+		}
+
+		void record() {
+
+			if (recorded.compareAndSet(false, true)) {
+				policy.record(System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public BoxedUnit apply(Try<Either<E, T>> t) {
+
+			record();
+
+			final boolean last = running.decrementAndGet() == 0;
+			final boolean right = t.isSuccess() && t.get().isRight();
+
+			if (right || last) {
+				final Cancellable scheduled = timer;
+				if (scheduled != null) {
+					scheduled.cancel();
+				}
+				if (!last) {
+					recordRunning();
+				}
+				if (t.isFailure()) {
+					trySuccess(new Left<>(errorFrom.apply(((Failure<?>) t).exception())));
+				} else {
+					tryComplete(t);
+				}
+			}
+
+			return BoxedUnit.UNIT;
+		}
+	}
+}
@@ -1,16 +1,20 @@
 package monad;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import errors.GenericError;
 import function.Function3;
 import function.Function4;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
 import scala.util.Either;
 
 
@@ -29,6 +33,16 @@ public interface MonadFutEither<E> {
 
 	<T> Future<Either<E,T>> handleErrorWith( Future<Either<E, T>> from, Function<E, Future<Either<E,T>>> f );
 
+	/**
+	 * How a failed future (an exception) is turned into an error of this monad
+	 */
+	E errorFrom( Throwable t );
+
+	/**
+	 * Where calls started from a timer (retries, hedges) run, so they never hold the timer thread
+	 */
+	ExecutionContext executionContext();
+
 	/**
 	 * Deriveds
 	 */
@@ -61,11 +75,16 @@ public interface MonadFutEither<E> {
 
 
 
+	/**
+	 * mapN (and flatMapN, built on them) subscribe to all their inputs at once and complete
+	 * with the first Left or exception, whichever input it comes from, without waiting for the others.
+	 */
+	@SuppressWarnings("unchecked")
 	default <A,B,T> Future<Either<E,T>> map2( Future<Either<E, A>> fromA,
 											  Future<Either<E, B>> fromB,
 											  BiFunction<A,B,T> f  ) {
 
-		return flatMap(fromA, a -> map(fromB, b -> f.apply(a, b)));
+		return map(FanIn.array(this::errorFrom, fromA, fromB), v -> f.apply((A) v[0], (B) v[1]));
 
 	}
 
@@ -79,45 +98,103 @@ public interface MonadFutEither<E> {
 
 	}
 
+	@SuppressWarnings("unchecked")
 	default <A,B,C,T> Future<Either<E,T>> map3( Future<Either<E, A>> fromA,
 																 Future<Either<E, B>> fromB,
 																 Future<Either<E, C>> fromC,
 																 Function3<A,B,C,T> f  ) {
 
-		return flatMap(fromA, a -> map2(fromB, fromC, (b, c)-> f.apply(a, b, c)));
+		return map(FanIn.array(this::errorFrom, fromA, fromB, fromC), v -> f.apply((A) v[0], (B) v[1], (C) v[2]));
 
 	}
 
+	@SuppressWarnings("unchecked")
 	default <A,B,C,D,T> scala.concurrent.Future<Either<E,T>> map4( Future<Either<E, A>> fromA,
 																 Future<Either<E, B>> fromB,
 																 Future<Either<E, C>> fromC,
 																 Future<Either<E, D>> fromD,
 																 Function4<A,B,C,D,T> f  ) {
 
-		return flatMap(fromA, a -> map3(fromB, fromC, fromD, (b, c, d)-> f.apply(a, b, c, d)));
+		return map(FanIn.array(this::errorFrom, fromA, fromB, fromC, fromD),
+				v -> f.apply((A) v[0], (B) v[1], (C) v[2], (D) v[3]));
 
 	}
 
+	/**
+	 * Iterative fan-in: one counter and one array for the whole list. Keeps the input order
+	 * and completes with the first Left without waiting for the rest.
+	 */
+	@SuppressWarnings("unchecked")
 	default <T> Future<Either<E, List<T>>> sequence( List<Future<Either<E, T>>> l ) {
 
-		return sequence(l.iterator());
+		return FanIn.all(l, this::errorFrom, results -> (List<T>) Arrays.asList(results));
 
 	}
 
 	default <T> Future<Either<E, List<T>>> sequence( Iterator <Future<Either<E, T>>> i ) {
 
+		final List<Future<Either<E, T>>> l = new ArrayList<>();
+		i.forEachRemaining(l::add);
 
-		//Condicion de finalizacion de recursividad
-		if(!i.hasNext()) {
-			return pure(new LinkedList<T>());
-		} else {
-			//Llamada recursiva
-			return map2(i.next(), sequence(i), (current, list) -> {
-				((LinkedList<T>) list).addFirst(current);
-				return list;
-			});
+		return sequence(l);
+	}
+
+	default <A,T> Future<Either<E, List<T>>> traverse( List<A> l, Function<A, Future<Either<E, T>>> f ) {
+
+		return parTraverse(l, Math.max(1, l.size()), f);
+
+	}
+
+	/**
+	 * Like traverse, but with at most maxInFlight calls to f running at a time.
+	 * Results keep the order of l and no new call is started after the first Left.
+	 * f runs on the thread that completed the previous call, so it must not block.
+	 */
+	@SuppressWarnings("unchecked")
+	default <A,T> Future<Either<E, List<T>>> parTraverse( List<A> l, int maxInFlight, Function<A, Future<Either<E, T>>> f ) {
+
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
 		}
+
+		return FanIn.bounded(l, maxInFlight, f, this::errorFrom, results -> (List<T>) Arrays.asList(results));
+
+	}
+
+	/**
+	 * Completes with the error for a TimeoutException (a TimeoutError in the GenericError monads)
+	 * if from has not completed after the given time. All timeouts share one hashed-wheel timer.
+	 */
+	default <T> Future<Either<E, T>> timeout( Future<Either<E, T>> from, FiniteDuration after ) {
+
+		return from.isCompleted() ? from : TimeLimit.of(from, after, this::errorFrom);
+
+	}
+
+	/**
+	 * Calls again after a Left or an exception, as the policy says. Retries wait on the
+	 * shared timer, not on a sleeping thread, and then run on executionContext().
+	 */
+	default <T> Future<Either<E, T>> retry( RetryPolicy<E> policy, Supplier<Future<Either<E, T>>> call ) {
+
+		return Retrying.of(policy, call, this::errorFrom, executionContext());
+
+	}
+
+	/**
+	 * Starts a second call when the first one is slower than the policy's percentile,
+	 * and keeps the first Right. Extra calls are limited by the policy's budget.
+	 */
+	default <T> Future<Either<E, T>> hedge( HedgePolicy policy, Supplier<Future<Either<E, T>>> call ) {
+
+		return Hedging.of(policy, call, this::errorFrom, executionContext());
+
 	}
 
 	<T> MonadFutEitherWrapper<GenericError, T> dslFrom(Future<Either<GenericError, T>> future);
+
+	/**
+	 * Same DSL, but it only records the steps: they run when value() is called
+	 */
+	<T> MonadFutEitherWrapper<GenericError, T> dslLazyFrom(Future<Either<GenericError, T>> future);
 }
@@ -2,9 +2,12 @@ package monad;
 
 import function.Function3;
 import function.Function4;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
 import scala.util.Either;
 
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -14,9 +17,21 @@ public class MonadFutEitherWrapper<E, T> {
 
     private final Future<Either<E, T>> fut;
 
+    /**
+     * Only in lazy mode: the steps to run on value(). fut is null then.
+     */
+    private final Program<E> program;
+
     private MonadFutEitherWrapper(Future<Either<E, T>> fut, MonadFutEither<E> m) {
         this.m = m;
         this.fut = fut;
+        this.program = null;
+    }
+
+    private MonadFutEitherWrapper(Program<E> program, MonadFutEither<E> m) {
+        this.m = m;
+        this.fut = null;
+        this.program = program;
     }
 
     public static <E,T> MonadFutEitherWrapper<E, T> wrap(Future<Either<E, T>> fut, MonadFutEither<E> m) {
@@ -24,32 +39,62 @@ public class MonadFutEitherWrapper<E, T> {
         return new MonadFutEitherWrapper<>(fut, m);
     }
 
+    /**
+     * Lazy mode: steps are only recorded, and value() runs all of them as a single future.
+     * Pure steps and already completed futures do not go through ec.
+     */
+    public static <E,T> MonadFutEitherWrapper<E, T> wrapLazy(Future<Either<E, T>> fut, MonadFutEither<E> m, ExecutionContext ec) {
+
+        return new MonadFutEitherWrapper<>(new Program<>(m, ec, fut), m);
+    }
+
     public Future<Either<E, T>> value() {
-        return fut;
+        return program == null ? fut : program.run();
     }
 
     public <S> MonadFutEitherWrapper<E, S> flatMap( Function<T, Future<Either<E,S>>> f ){
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.FLAT_MAP, f), m);
+        }
+
         return wrap( m.flatMap(fut, f), m);
     }
 
     public <S> MonadFutEitherWrapper<E, S> map( Function<T, S> f ){
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.MAP, f), m);
+        }
+
         return wrap( m.map(fut, f), m);
     }
 
     public MonadFutEitherWrapper<E,T> handleErrorWith( Function<E, Future<Either<E,T>>> f ) {
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.HANDLE_ERROR_WITH, f), m);
+        }
+
         return wrap( m.handleErrorWith(fut, f), m);
     }
 
     public MonadFutEitherWrapper<E,T> handleError( Function<E, T> f ) {
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.HANDLE_ERROR, f), m);
+        }
+
         return wrap( m.handleError(fut, f), m );
     }
 
     public <B, S> MonadFutEitherWrapper<E,S> map2( Future<Either<E, B>> fromB, BiFunction<T,B,S> f  ) {
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.WHOLE,
+                    (Future<Either<E, T>> from) -> m.map2(from, fromB, f)), m);
+        }
+
         return wrap( m.map2(fut, fromB, f), m );
     }
 
@@ -57,6 +102,11 @@ public class MonadFutEitherWrapper<E, T> {
                                                          Future<Either<E, C>> fromC,
                                                          Function3<T,B,C,S> f  ) {
 
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.WHOLE,
+                    (Future<Either<E, T>> from) -> m.map3(from, fromB, fromC, f)), m);
+        }
+
         return wrap( m.map3(fut, fromB, fromC, f), m );
     }
 
@@ -64,6 +114,45 @@ public class MonadFutEitherWrapper<E, T> {
                                                         Future<Either<E, B>> fromB,
                                                         Future<Either<E, C>> fromC,
                                                         Function4<T, A, B, C, S> f) {
+
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.then(Program.Kind.WHOLE,
+                    (Future<Either<E, T>> from) -> m.map4(from, fromA, fromB, fromC, f)), m);
+        }
+
         return wrap( m.map4(fut, fromA, fromB, fromC, f), m );
     }
+
+    public <A, S> MonadFutEitherWrapper<E, List<S>> traverse( Function<T, List<A>> items,
+                                                              Function<A, Future<Either<E, S>>> f ) {
+
+        return flatMap( t -> m.traverse(items.apply(t), f) );
+    }
+
+    public <A, S> MonadFutEitherWrapper<E, List<S>> parTraverse( Function<T, List<A>> items,
+                                                                 int maxInFlight,
+                                                                 Function<A, Future<Either<E, S>>> f ) {
+
+        return flatMap( t -> m.parTraverse(items.apply(t), maxInFlight, f) );
+    }
+
+    /**
+     * In lazy mode the timer starts when value() runs the program
+     */
+    public MonadFutEitherWrapper<E, T> timeout( FiniteDuration after ) {
+
+        if (program != null) {
+            return new MonadFutEitherWrapper<>(program.<T>around(from -> m.timeout(from, after)), m);
+        }
+
+        return wrap( m.timeout(fut, after), m );
+    }
+
+    /**
+     * flatMap with a call that is retried as the policy says
+     */
+    public <S> MonadFutEitherWrapper<E, S> flatMapRetrying( RetryPolicy<E> policy, Function<T, Future<Either<E,S>>> f ) {
+
+        return flatMap( t -> m.retry(policy, () -> f.apply(t)) );
+    }
 }
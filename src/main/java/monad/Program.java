@@ -0,0 +1,249 @@
+package monad;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import akka.dispatch.Futures;
+import scala.Function1;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Right;
+import scala.util.Success;
+import scala.util.Try;
+import scala.util.control.NonFatal;
+import util.RequestContext;
+
+/**
+ * The steps recorded by a lazy MonadFutEitherWrapper. Nothing runs until run() is called.
+ *
+ * Programs are immutable: adding a step returns a new program, so a wrapper can be
+ * reused as the start of several chains. The steps run in the RequestContext that was
+ * current when the program was built, however many async hops they take.
+ */
+final class Program<E> {
+
+	/**
+	 * WHOLE steps get the current result as a completed future, Left or Right,
+	 * and return the next one (used for the monad's own mapN combinators)
+	 */
+	enum Kind { MAP, FLAT_MAP, HANDLE_ERROR, HANDLE_ERROR_WITH, WHOLE }
+
+	private static final class Step {
+
+		private final Kind kind;
+		private final Function<Object, Object> f;
+		private final Step previous;
+
+		private Step(Kind kind, Function<Object, Object> f, Step previous) {
+			this.kind = kind;
+			this.f = f;
+			this.previous = previous;
+		}
+	}
+
+	private final MonadFutEither<E> m;
+
+	private final ExecutionContext ec;
+
+	/**
+	 * Called by run(), so a source that starts work (a timeout, a sub-program) starts it then
+	 */
+	private final Supplier<Future<Either<E, Object>>> source;
+
+	private final Step last;
+
+	private final int length;
+
+	private final RequestContext context;
+
+	private Future<Either<E, Object>> result;
+
+	@SuppressWarnings("unchecked")
+	Program(MonadFutEither<E> m, ExecutionContext ec, Future<? extends Either<E, ?>> source) {
+		this(m, ec, () -> (Future<Either<E, Object>>) source, null, 0, RequestContext.current());
+	}
+
+	private Program(MonadFutEither<E> m, ExecutionContext ec, Supplier<Future<Either<E, Object>>> source, Step last, int length,
+					RequestContext context) {
+		this.m = m;
+		this.ec = ec;
+		this.source = source;
+		this.last = last;
+		this.length = length;
+		this.context = context;
+	}
+
+	@SuppressWarnings("unchecked")
+	Program<E> then(Kind kind, Function<?, ?> f) {
+
+		return new Program<>(m, ec, source, new Step(kind, (Function<Object, Object>) f, last), length + 1, context);
+	}
+
+	/**
+	 * A program that starts from f applied to the future of this one, both called
+	 * when the new program runs (for steps such as a timeout that must start with it)
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Program<E> around(Function<Future<Either<E, T>>, ? extends Future<? extends Either<E, ?>>> f) {
+
+		return new Program<>(m, ec, () -> (Future<Either<E, Object>>) f.apply(this.<T>run()), null, 0, context);
+	}
+
+	/**
+	 * Runs the program once; later calls return the same future.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized <T> Future<Either<E, T>> run() {
+
+		if (result == null) {
+			final Step[] steps = new Step[length];
+			Step step = last;
+			for (int i = length - 1; i >= 0; i--) {
+				steps[i] = step;
+				step = step.previous;
+			}
+			final Interpreter interpreter = new Interpreter(steps);
+			final Future<Either<E, Object>> first;
+			final RequestContext previous = RequestContext.attach(context);
+			try {
+				first = source.get();
+			} finally {
+				RequestContext.restore(previous);
+			}
+			interpreter.resume(first);
+			result = interpreter;
+		}
+
+		return (Future<Either<E, T>>) (Future<?>) result;
+	}
+
+	/**
+	 * Trampolined interpreter: pure steps and already completed futures are consumed in a loop,
+	 * and only a running future suspends it. Adjacent map steps are merged into one Right.
+	 * It resumes on ec with a fresh stack, so the whole program costs a single promise.
+	 */
+	@SuppressWarnings("serial")
+	private final class Interpreter extends DefaultPromise<Either<E, Object>> implements Function1<Try<Either<E, Object>>, BoxedUnit> {
+
+		private final Step[] steps;
+
+		private int pc;
+
+		private Interpreter(Step[] steps) {
+			this.steps = steps;
+		}
+
+		@Override
+		public BoxedUnit apply(Try<Either<E, Object>> t) {
+			run(t);
+			return BoxedUnit.UNIT;
+		}
+
+		private void resume(Future<Either<E, Object>> next) {
+
+			if (next.isCompleted()) {
+				run(next.value().get());
+			} else {
+				next.onComplete(this, ec);
+			}
+		}
+
+		/**
+		 * Runs the steps in the program's RequestContext, and completes after restoring the previous one
+		 */
+		private void run(Try<Either<E, Object>> t) {
+
+			final Try<Either<E, Object>> done;
+			final RequestContext previous = RequestContext.attach(context);
+			try {
+				done = interpret(t);
+			} finally {
+				RequestContext.restore(previous);
+			}
+
+			if (done != null) {
+				tryComplete(done);
+			}
+		}
+
+		/**
+		 * @return the result of the program, or null if it is waiting for a future
+		 */
+		@SuppressWarnings("unchecked")
+		private Try<Either<E, Object>> interpret(Try<Either<E, Object>> t) {
+
+			Try<Either<E, Object>> current = t;
+
+			loop:
+			for (;;) {
+
+				Either<E, Object> value = current.isFailure()
+						? new Left<>(m.errorFrom(((Failure<?>) current).exception()))
+						: current.get();
+				boolean changed = current.isFailure();
+
+				while (pc < steps.length) {
+
+					final Step step = steps[pc++];
+					Future<Either<E, Object>> next = null;
+
+					try {
+						switch (step.kind) {
+							case MAP:
+								if (value.isRight()) {
+									Object mapped = step.f.apply(value.right().get());
+									while (pc < steps.length && steps[pc].kind == Kind.MAP) {
+										mapped = steps[pc++].f.apply(mapped);
+									}
+									value = new Right<>(mapped);
+									changed = true;
+								}
+								break;
+							case HANDLE_ERROR:
+								if (value.isLeft()) {
+									value = new Right<>(step.f.apply(value.left().get()));
+									changed = true;
+								}
+								break;
+							case FLAT_MAP:
+								if (value.isRight()) {
+									next = (Future<Either<E, Object>>) step.f.apply(value.right().get());
+								}
+								break;
+							case HANDLE_ERROR_WITH:
+								if (value.isLeft()) {
+									next = (Future<Either<E, Object>>) step.f.apply(value.left().get());
+								}
+								break;
+							case WHOLE:
+								next = (Future<Either<E, Object>>) step.f.apply(Futures.successful(value));
+								break;
+						}
+					} catch (Throwable e) {
+						if (!NonFatal.apply(e)) {
+							throw e;
+						}
+						value = new Left<>(m.errorFrom(e));
+						changed = true;
+					}
+
+					if (next != null) {
+						if (!next.isCompleted()) {
+							next.onComplete(this, ec);
+							return null;
+						}
+						current = next.value().get();
+						continue loop;
+					}
+				}
+
+				return changed ? new Success<>(value) : current;
+			}
+		}
+	}
+}
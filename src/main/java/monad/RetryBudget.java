@@ -0,0 +1,68 @@
+package monad;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of the calls made, so retries cannot multiply the load
+ * on a service that is down. Share one budget per service.
+ *
+ * Token bucket without locks: every first attempt deposits ratio tokens (up to maxBalance)
+ * and every retry withdraws a whole token.
+ */
+public final class RetryBudget {
+
+	private static final long TOKEN = 1000;
+
+	private final long deposit;
+
+	private final long maxBalance;
+
+	private final AtomicLong balance;
+
+	/**
+	 * @param ratio retries allowed per call, e.g. 0.1 for one retry every ten calls
+	 * @param maxBalance retries that can be spent in a burst; the budget starts full
+	 */
+	public RetryBudget(double ratio, int maxBalance) {
+		this.deposit = (long) (ratio * TOKEN);
+		this.maxBalance = maxBalance * TOKEN;
+		this.balance = new AtomicLong(this.maxBalance);
+	}
+
+	public static RetryBudget unlimited() {
+
+		return new RetryBudget(1, Integer.MAX_VALUE);
+	}
+
+	void deposit() {
+
+		long current;
+		do {
+			current = balance.get();
+			if (current >= maxBalance) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+	}
+
+	boolean tryWithdraw() {
+
+		long current;
+		do {
+			current = balance.get();
+			if (current < TOKEN) {
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - TOKEN));
+
+		return true;
+	}
+
+	/**
+	 * Retries that can be made right now
+	 */
+	public long available() {
+
+		return balance.get() / TOKEN;
+	}
+}
@@ -0,0 +1,99 @@
+package monad;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * When and how often MonadFutEither.retry calls again: exponential backoff with jitter,
+ * the errors worth retrying and the budget that retries are taken from.
+ */
+public final class RetryPolicy<E> {
+
+	private final int maxAttempts;
+
+	private final long initialDelayNanos;
+
+	private final long maxDelayNanos;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	private final Predicate<E> retryable;
+
+	private final RetryBudget budget;
+
+	private RetryPolicy(int maxAttempts, long initialDelayNanos, long maxDelayNanos, double multiplier,
+						double jitter, Predicate<E> retryable, RetryBudget budget) {
+		this.maxAttempts = maxAttempts;
+		this.initialDelayNanos = initialDelayNanos;
+		this.maxDelayNanos = maxDelayNanos;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+		this.retryable = retryable;
+		this.budget = budget;
+	}
+
+	/**
+	 * Doubles the delay after every attempt, with full jitter, retrying every error
+	 *
+	 * @param maxAttempts including the first call
+	 */
+	public static <E> RetryPolicy<E> exponential(int maxAttempts, FiniteDuration initialDelay, FiniteDuration maxDelay) {
+
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+		}
+
+		return new RetryPolicy<>(maxAttempts, initialDelay.toNanos(), maxDelay.toNanos(), 2, 1, e -> true, RetryBudget.unlimited());
+	}
+
+	public RetryPolicy<E> withMultiplier(double multiplier) {
+
+		return new RetryPolicy<>(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryable, budget);
+	}
+
+	/**
+	 * @param jitter fraction of each delay that is random: 0 for none, 1 for full jitter
+	 */
+	public RetryPolicy<E> withJitter(double jitter) {
+
+		return new RetryPolicy<>(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryable, budget);
+	}
+
+	public RetryPolicy<E> retryingOn(Predicate<E> retryable) {
+
+		return new RetryPolicy<>(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryable, budget);
+	}
+
+	public RetryPolicy<E> withBudget(RetryBudget budget) {
+
+		return new RetryPolicy<>(maxAttempts, initialDelayNanos, maxDelayNanos, multiplier, jitter, retryable, budget);
+	}
+
+	int maxAttempts() {
+		return maxAttempts;
+	}
+
+	RetryBudget budget() {
+		return budget;
+	}
+
+	boolean isRetryable(E error) {
+		return retryable.test(error);
+	}
+
+	/**
+	 * @param attempt the attempt that just failed, starting at 1
+	 */
+	FiniteDuration delayAfter(int attempt) {
+
+		final double backoff = Math.min(maxDelayNanos, initialDelayNanos * Math.pow(multiplier, attempt - 1));
+		final double random = backoff * jitter * ThreadLocalRandom.current().nextDouble();
+
+		return FiniteDuration.create((long) (backoff - random), TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,112 @@
+package monad;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import akka.dispatch.Futures;
+import scala.Function1;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Try;
+import scala.util.control.NonFatal;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+import util.Schedulers;
+import util.TraceContext;
+
+/**
+ * The result of a retry: a promise that is also the callback of every attempt and the
+ * timer task that starts the next one on ec. Waiting for a retry does not hold any thread.
+ *
+ * Every attempt runs in the RequestContext and TraceContext of the caller, and there
+ * are no more attempts once that request is done.
+ */
+@SuppressWarnings("serial")
+final class Retrying<E, T> extends DefaultPromise<Either<E, T>> implements Function1<Try<Either<E, T>>, BoxedUnit>, Runnable {
+
+	private final RetryPolicy<E> policy;
+
+	private final Supplier<Future<Either<E, T>>> call;
+
+	private final Function<Throwable, E> errorFrom;
+
+	private final ExecutionContext ec;
+
+	private final RequestContext context = RequestContext.current();
+
+	private final TraceContext trace = TraceContext.current();
+
+	private int attempt;
+
+	private Retrying(RetryPolicy<E> policy, Supplier<Future<Either<E, T>>> call, Function<Throwable, E> errorFrom, ExecutionContext ec) {
+		this.policy = policy;
+		this.call = call;
+		this.errorFrom = errorFrom;
+		this.ec = ec;
+	}
+
+	/**
+	 * @param ec where the retries run; the timer only dispatches them
+	 */
+	static <E, T> Future<Either<E, T>> of(RetryPolicy<E> policy, Supplier<Future<Either<E, T>>> call, Function<Throwable, E> errorFrom, ExecutionContext ec) {
+
+		final Retrying<E, T> retrying = new Retrying<>(policy, call, errorFrom, ec);
+		policy.budget().deposit();
+		retrying.run();
+		return retrying;
+	}
+
+	@Override
+	public void run() {
+
+		if (context != null && context.isDone()) {
+			trySuccess(new Left<>(errorFrom.apply(context.failure())));
+			return;
+		}
+
+		attempt++;
+
+		Future<Either<E, T>> result;
+
+		final RequestContext previous = RequestContext.attach(context);
+		final TraceContext previousTrace = TraceContext.attach(trace);
+		try {
+			result = call.get();
+		} catch (Throwable e) {
+			if (!NonFatal.apply(e)) {
+				throw e;
+			}
+			result = Futures.successful(new Left<>(errorFrom.apply(e)));
+		} finally {
+			TraceContext.restore(previousTrace);
+			RequestContext.restore(previous);
+		}
+
+		result.onComplete(this, SameThreadExecutionContext.INSTANCE);
+	}
+
+	@Override
+	public BoxedUnit apply(Try<Either<E, T>> t) {
+
+		if (t.isSuccess() && t.get().isRight()) {
+			tryComplete(t);
+			return BoxedUnit.UNIT;
+		}
+
+		final E error = t.isFailure() ? errorFrom.apply(((Failure<?>) t).exception()) : t.get().left().get();
+
+		if (attempt < policy.maxAttempts() && policy.isRetryable(error)
+				&& (context == null || !context.isDone()) && policy.budget().tryWithdraw()) {
+			Schedulers.shared().scheduleOnce(policy.delayAfter(attempt), this, ec);
+		} else {
+			trySuccess(new Left<>(error));
+		}
+
+		return BoxedUnit.UNIT;
+	}
+}
@@ -0,0 +1,70 @@
+package monad;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import akka.actor.Cancellable;
+import scala.Function1;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Try;
+import util.SameThreadExecutionContext;
+import util.Schedulers;
+
+/**
+ * The result of a timeout: a promise that is also the timer task and the callback of
+ * its input, so a pending timeout costs one object and one wheel slot. The timer is
+ * cancelled as soon as the input completes.
+ */
+@SuppressWarnings("serial")
+final class TimeLimit<E, T> extends DefaultPromise<Either<E, T>> implements Function1<Try<Either<E, T>>, BoxedUnit>, Runnable {
+
+	private final FiniteDuration after;
+
+	private final Function<Throwable, E> errorFrom;
+
+	private volatile Cancellable timer;
+
+	private TimeLimit(FiniteDuration after, Function<Throwable, E> errorFrom) {
+		this.after = after;
+		this.errorFrom = errorFrom;
+	}
+
+	static <E, T> Future<Either<E, T>> of(Future<Either<E, T>> from, FiniteDuration after, Function<Throwable, E> errorFrom) {
+
+		final TimeLimit<E, T> limit = new TimeLimit<>(after, errorFrom);
+
+		limit.timer = Schedulers.shared().scheduleOnce(after, limit, SameThreadExecutionContext.INSTANCE);
+		from.onComplete(limit, SameThreadExecutionContext.INSTANCE);
+
+		return limit;
+	}
+
+	@Override
+	public void run() {
+
+		trySuccess(new Left<>(errorFrom.apply(new TimeoutException("Timed out after " + after))));
+	}
+
+	@Override
+	public BoxedUnit apply(Try<Either<E, T>> t) {
+
+		final Cancellable scheduled = timer;
+		if (scheduled != null) {
+			scheduled.cancel();
+		}
+
+		if (t.isFailure()) {
+			trySuccess(new Left<>(errorFrom.apply(((Failure<?>) t).exception())));
+		} else {
+			tryComplete(t);
+		}
+
+		return BoxedUnit.UNIT;
+	}
+}
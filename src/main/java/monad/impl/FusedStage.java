@@ -0,0 +1,167 @@
+package monad.impl;
+
+import java.util.function.Function;
+
+import monad.MonadFutEither;
+import scala.Function1;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Failure;
+import scala.util.Left;
+import scala.util.Success;
+import scala.util.Try;
+import scala.util.control.NonFatal;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+
+/**
+ * One flatMap or handleErrorWith step: a promise that is also the callback of its input.
+ *
+ * The Right, Left and exception cases are handled in a single callback, and a Left or Right
+ * that only has to go through is completed with the same Try instance it arrived with.
+ * When the continuation returns a future that is still running, the stage registers itself
+ * on it as well, so each step costs one object however it ends.
+ */
+@SuppressWarnings("serial")
+final class FusedStage<E, T> extends DefaultPromise<Either<E, T>> implements Function1<Try<Either<E, Object>>, BoxedUnit> {
+
+	private final MonadFutEither<E> m;
+
+	private final boolean onRight;
+
+	private final Function<Object, Future<Either<E, T>>> f;
+
+	private final RequestContext context;
+
+	private boolean awaitingResult;
+
+	private FusedStage(MonadFutEither<E> m, boolean onRight, Function<Object, Future<Either<E, T>>> f, RequestContext context) {
+		this.m = m;
+		this.onRight = onRight;
+		this.f = f;
+		this.context = context;
+	}
+
+	/**
+	 * Applies the continuation on a completed future, in the calling thread.
+	 */
+	@SuppressWarnings("unchecked")
+	static <E, T> Future<Either<E, T>> now( MonadFutEither<E> m,
+											boolean onRight,
+											Future<? extends Either<E, ?>> from,
+											Function<?, Future<Either<E, T>>> f ) {
+
+		final Try<? extends Either<E, ?>> t = from.value().get();
+
+		if (t.isFailure()) {
+			return m.raiseError(m.errorFrom(((Failure<?>) t).exception()));
+		}
+
+		final Either<E, ?> either = t.get();
+
+		if (either.isRight() != onRight) {
+			return (Future<Either<E, T>>) from;
+		}
+
+		final Future<Either<E, T>> result;
+
+		try {
+			result = ((Function<Object, Future<Either<E, T>>>) f).apply(onRight ? either.right().get() : either.left().get());
+		} catch (Throwable e) {
+			if (!NonFatal.apply(e)) {
+				throw e;
+			}
+			return m.raiseError(m.errorFrom(e));
+		}
+
+		if (!result.isCompleted()) {
+			final FusedStage<E, T> stage = new FusedStage<>(m, onRight, null, null);
+			stage.awaitResult(result);
+			return stage;
+		}
+
+		final Try<Either<E, T>> r = result.value().get();
+
+		return r.isFailure() ? m.raiseError(m.errorFrom(((Failure<?>) r).exception())) : result;
+	}
+
+	/**
+	 * Applies the continuation when from completes, running it on ec.
+	 */
+	@SuppressWarnings("unchecked")
+	static <E, T> Future<Either<E, T>> later( MonadFutEither<E> m,
+											  boolean onRight,
+											  Future<? extends Either<E, ?>> from,
+											  Function<?, Future<Either<E, T>>> f,
+											  ExecutionContext ec ) {
+
+		final FusedStage<E, T> stage = new FusedStage<>(m, onRight, (Function<Object, Future<Either<E, T>>>) f, RequestContext.current());
+		((Future<Either<E, Object>>) from).onComplete(stage, ec);
+		return stage;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public BoxedUnit apply(Try<Either<E, Object>> t) {
+
+		if (t.isFailure()) {
+			fail(((Failure<?>) t).exception());
+			return BoxedUnit.UNIT;
+		}
+
+		if (awaitingResult) {
+			tryComplete((Try<Either<E, T>>) (Try<?>) t);
+			return BoxedUnit.UNIT;
+		}
+
+		final Either<E, Object> either = t.get();
+
+		if (either.isRight() != onRight) {
+			tryComplete((Try<Either<E, T>>) (Try<?>) t);
+			return BoxedUnit.UNIT;
+		}
+
+		final Future<Either<E, T>> result;
+		final RequestContext previous = RequestContext.attach(context);
+
+		try {
+			result = f.apply(onRight ? either.right().get() : either.left().get());
+		} catch (Throwable e) {
+			if (!NonFatal.apply(e)) {
+				throw e;
+			}
+			fail(e);
+			return BoxedUnit.UNIT;
+		} finally {
+			RequestContext.restore(previous);
+		}
+
+		if (result.isCompleted()) {
+			final Try<Either<E, T>> r = result.value().get();
+			if (r.isFailure()) {
+				fail(((Failure<?>) r).exception());
+			} else {
+				tryComplete(r);
+			}
+		} else {
+			awaitResult(result);
+		}
+
+		return BoxedUnit.UNIT;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void awaitResult(Future<Either<E, T>> result) {
+
+		awaitingResult = true;
+		((Future<Either<E, Object>>) (Future<?>) result).onComplete(this, SameThreadExecutionContext.INSTANCE);
+	}
+
+	private void fail(Throwable e) {
+
+		tryComplete(new Success<>(new Left<>(m.errorFrom(e))));
+	}
+}
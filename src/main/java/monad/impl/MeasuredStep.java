@@ -0,0 +1,70 @@
+package monad.impl;
+
+import java.util.function.Function;
+
+import metrics.StageMetrics;
+import scala.Function1;
+import scala.concurrent.Future;
+import scala.runtime.BoxedUnit;
+import scala.util.Either;
+import scala.util.Try;
+import util.SameThreadExecutionContext;
+
+/**
+ * The continuation of an instrumented flatMap or handleErrorWith, recording it from the call
+ * to f until the future f returns completes.
+ *
+ * Like FusedStage it is also its own callback: it is first called with the input value,
+ * and then, if the result is still running, with the result's Try. So each step costs one
+ * object however it ends.
+ */
+final class MeasuredStep<E, A, T> implements Function<Object, Object>, Function1<Object, Object> {
+
+	private final StageMetrics metrics;
+
+	private final Function<A, Future<Either<E, T>>> f;
+
+	private long start;
+
+	private boolean awaitingResult;
+
+	private MeasuredStep(StageMetrics metrics, Function<A, Future<Either<E, T>>> f) {
+		this.metrics = metrics;
+		this.f = f;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E, A, T> Function<A, Future<Either<E, T>>> of(StageMetrics metrics, Function<A, Future<Either<E, T>>> f) {
+
+		return (Function<A, Future<Either<E, T>>>) (Function<?, ?>) new MeasuredStep<>(metrics, f);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Object apply(Object v) {
+
+		if (awaitingResult) {
+			metrics.record(start, (Try<? extends Either<?, ?>>) v);
+			return BoxedUnit.UNIT;
+		}
+
+		start = metrics.start();
+		final Future<Either<E, T>> result;
+
+		try {
+			result = f.apply((A) v);
+		} catch (Throwable e) {
+			metrics.failed(start);
+			throw e;
+		}
+
+		if (result.isCompleted()) {
+			metrics.record(start, result.value().get());
+		} else {
+			awaitingResult = true;
+			result.onComplete((Function1<Try<Either<E, T>>, Object>) (Function1<?, ?>) this, SameThreadExecutionContext.INSTANCE);
+		}
+
+		return result;
+	}
+}
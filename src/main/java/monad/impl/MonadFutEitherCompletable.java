@@ -0,0 +1,141 @@
+package monad.impl;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import errors.GenericError;
+import errors.impl.Errors;
+import monad.MonadFutEither;
+import monad.MonadFutEitherWrapper;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.util.Either;
+import scala.util.Left;
+import scala.util.Right;
+import scala.util.control.NonFatal;
+
+import static monad.MonadFutEitherWrapper.wrap;
+import static monad.MonadFutEitherWrapper.wrapLazy;
+import static util.FutureConverters.toJava;
+import static util.FutureConverters.toScala;
+import static util.FutureConverters.unwrap;
+
+/**
+ * MonadFutEither running on java.util.concurrent.CompletableFuture.
+ *
+ * Inputs and results are still scala futures, so it is a drop-in replacement for
+ * MonadFutEitherError. Each step is a CompletableFuture handed out behind a thin scala
+ * wrapper; when it is the input of the next step the wrapper is unwrapped, so chains of
+ * steps stay on CompletableFuture. Futures from elsewhere (e.g. services) cost one
+ * callback to convert.
+ */
+public class MonadFutEitherCompletable implements MonadFutEither<GenericError> {
+
+	private final Executor executor;
+
+	private final ExecutionContext ec;
+
+
+	public MonadFutEitherCompletable(Executor executor) {
+		super();
+		this.executor = executor;
+		this.ec = ExecutionContexts.fromExecutor(executor);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> pure(T value) {
+
+		return Futures.successful(new Right<>(value));
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, T>> flatMap(
+			Future<Either<GenericError, A>> from,
+			Function<A, Future<Either<GenericError, T>>> f) {
+
+		return stage(true, from, f);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> raiseError(GenericError error) {
+
+		return Futures.successful(new Left<>(error));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> handleErrorWith(
+			Future<Either<GenericError, T>> from,
+			Function<GenericError, Future<Either<GenericError, T>>> f) {
+
+		return stage(false, from, f);
+	}
+
+	@Override
+	public GenericError errorFrom(Throwable t) {
+
+		return Errors.fromThrowable(unwrap(t));
+	}
+
+	@Override
+	public ExecutionContext executionContext() {
+
+		return ec;
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslFrom(Future<Either<GenericError, T>> future) {
+		return wrap(future, this);
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslLazyFrom(Future<Either<GenericError, T>> future) {
+		return wrapLazy(future, this, ec);
+	}
+
+	/**
+	 * One callback for the Right, Left and exception cases, run on executor
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Future<Either<GenericError, T>> stage(
+			boolean onRight,
+			Future<? extends Either<GenericError, ?>> from,
+			Function<?, Future<Either<GenericError, T>>> f) {
+
+		final Function<Object, Future<Either<GenericError, T>>> cont = (Function<Object, Future<Either<GenericError, T>>>) f;
+		final CompletableFuture<Either<GenericError, T>> result = new CompletableFuture<>();
+
+		toJava((Future<Either<GenericError, Object>>) from).whenCompleteAsync((either, t) -> {
+
+			if (t != null) {
+				result.complete(new Left<>(errorFrom(t)));
+				return;
+			}
+
+			if (either.isRight() != onRight) {
+				result.complete((Either<GenericError, T>) (Either<GenericError, ?>) either);
+				return;
+			}
+
+			final Future<Either<GenericError, T>> next;
+
+			try {
+				next = cont.apply(onRight ? either.right().get() : either.left().get());
+			} catch (Throwable e) {
+				if (!NonFatal.apply(e)) {
+					throw e;
+				}
+				result.complete(new Left<>(errorFrom(e)));
+				return;
+			}
+
+			toJava(next).whenComplete((r, t2) -> result.complete(t2 != null ? new Left<>(errorFrom(t2)) : r));
+
+		}, executor);
+
+		return toScala(result);
+	}
+}
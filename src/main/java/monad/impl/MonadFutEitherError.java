@@ -4,7 +4,7 @@ package monad.impl;
 import java.util.function.Function;
 
 import akka.dispatch.Futures;
-import errors.impl.MyError;
+import errors.impl.Errors;
 import monad.MonadFutEither;
 import monad.MonadFutEitherWrapper;
 import scala.concurrent.ExecutionContext;
@@ -13,11 +13,19 @@ import scala.util.Either;
 
 import scala.util.Left;
 import scala.util.Right;
-import util.Java8;
 import errors.GenericError;
 import static monad.MonadFutEitherWrapper.wrap;
+import static monad.MonadFutEitherWrapper.wrapLazy;
 
 public class MonadFutEitherError implements MonadFutEither<GenericError> {
+
+	/**
+	 * Continuations over already completed futures run inline, without going through ec.
+	 * Nested inline runs are limited to keep the stack safe; past the limit they go to ec.
+	 */
+	private static final int MAX_INLINE_DEPTH = 64;
+
+	private static final ThreadLocal<int[]> INLINE_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
 	
 	private final ExecutionContext ec;
 	
@@ -38,9 +46,7 @@ public class MonadFutEitherError implements MonadFutEither<GenericError> {
 			Future<Either<GenericError, A>> from,
 			Function<A, Future<Either<GenericError, T>>> f) {
 		
-		return from
-				.flatMap( a -> a.isRight() ? f.apply(a.right().get()) : raiseError(a.left().get()), ec)
-				.recoverWith(Java8.recoverF(t -> raiseError(new MyError(t.getMessage()))), ec);
+		return stage(true, from, f);
 	}
 
 	@Override
@@ -54,13 +60,48 @@ public class MonadFutEitherError implements MonadFutEither<GenericError> {
 			Future<Either<GenericError, T>> from,
 			Function<GenericError, Future<Either<GenericError, T>>> f) {
 		
-		return from
-				.flatMap(t -> t.isRight() ? pure(t.right().get()) : f.apply(t.left().get()) , ec)
-				.recoverWith(Java8.recoverF( t-> raiseError(new MyError(t.getMessage()))), ec);
+		return stage(false, from, f);
+	}
+
+	@Override
+	public GenericError errorFrom(Throwable t) {
+
+		return Errors.fromThrowable(t);
+	}
+
+	@Override
+	public ExecutionContext executionContext() {
+
+		return ec;
 	}
 
 	@Override
     public <T> MonadFutEitherWrapper<GenericError, T> dslFrom(Future<Either<GenericError, T>> future) {
 	    return wrap(future, this);
     }
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslLazyFrom(Future<Either<GenericError, T>> future) {
+		return wrapLazy(future, this, ec);
+	}
+
+	private <T> Future<Either<GenericError, T>> stage(
+			boolean onRight,
+			Future<? extends Either<GenericError, ?>> from,
+			Function<?, Future<Either<GenericError, T>>> f) {
+
+		if (from.isCompleted()) {
+			final int[] depth = INLINE_DEPTH.get();
+			if (depth[0] < MAX_INLINE_DEPTH) {
+				depth[0]++;
+				try {
+					return FusedStage.now(this, onRight, from, f);
+				} finally {
+					depth[0]--;
+				}
+			}
+		}
+
+		return FusedStage.later(this, onRight, from, f, ec);
+	}
 }
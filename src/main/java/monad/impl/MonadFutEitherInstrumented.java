@@ -0,0 +1,246 @@
+package monad.impl;
+
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import errors.GenericError;
+import function.Function3;
+import function.Function4;
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import monad.HedgePolicy;
+import monad.MonadFutEither;
+import monad.MonadFutEitherWrapper;
+import monad.RetryPolicy;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+import scala.util.Either;
+
+import static monad.MonadFutEitherWrapper.wrap;
+import static monad.MonadFutEitherWrapper.wrapLazy;
+
+/**
+ * Records the metrics of every stage run through the wrapped monad.
+ *
+ * flatMap and handleErrorWith record their continuation, from the call to f until the
+ * future it returns completes, with one MeasuredStep per step and no other allocation; the combinators (mapN, sequence, traverse, timeout, retry,
+ * hedge) record from the call until their result completes. map and handleError only
+ * go through the wrapped monad, as their continuations do not wait for anything.
+ *
+ * Stages are named after the operation, prefixed by the name given to named().
+ */
+public class MonadFutEitherInstrumented implements MonadFutEither<GenericError> {
+
+	private final MonadFutEither<GenericError> m;
+
+	private final MetricsRegistry registry;
+
+	private final ExecutionContext ec;
+
+	private final String prefix;
+
+	private final StageMetrics flatMap;
+
+	private final StageMetrics handleErrorWith;
+
+	private final StageMetrics map2;
+
+	private final StageMetrics map3;
+
+	private final StageMetrics map4;
+
+	private final StageMetrics sequence;
+
+	private final StageMetrics traverse;
+
+	private final StageMetrics timeout;
+
+	private final StageMetrics retry;
+
+	private final StageMetrics hedge;
+
+	/**
+	 * The stages of measure, by name without the prefix
+	 */
+	private final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @param ec only used to run programs built with dslLazyFrom
+	 */
+	public MonadFutEitherInstrumented(MonadFutEither<GenericError> m, MetricsRegistry registry, ExecutionContext ec) {
+		this(m, registry, ec, "");
+	}
+
+	private MonadFutEitherInstrumented(MonadFutEither<GenericError> m, MetricsRegistry registry, ExecutionContext ec, String prefix) {
+		super();
+		this.m = m;
+		this.registry = registry;
+		this.ec = ec;
+		this.prefix = prefix;
+		this.flatMap = registry.stage(prefix + "flatMap");
+		this.handleErrorWith = registry.stage(prefix + "handleErrorWith");
+		this.map2 = registry.stage(prefix + "map2");
+		this.map3 = registry.stage(prefix + "map3");
+		this.map4 = registry.stage(prefix + "map4");
+		this.sequence = registry.stage(prefix + "sequence");
+		this.traverse = registry.stage(prefix + "traverse");
+		this.timeout = registry.stage(prefix + "timeout");
+		this.retry = registry.stage(prefix + "retry");
+		this.hedge = registry.stage(prefix + "hedge");
+	}
+
+	/**
+	 * The same monad recording under "name." + operation, e.g. getSummary.flatMap
+	 */
+	public MonadFutEitherInstrumented named(String name) {
+
+		return new MonadFutEitherInstrumented(m, registry, ec, prefix + name + ".");
+	}
+
+	/**
+	 * Records any call under the given stage name
+	 */
+	public <T> Future<Either<GenericError, T>> measure(String stage, Supplier<Future<Either<GenericError, T>>> call) {
+
+		StageMetrics metrics = stages.get(stage);
+		if (metrics == null) {
+			metrics = stages.computeIfAbsent(stage, s -> registry.stage(prefix + s));
+		}
+		return metrics.measure(call);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> pure(T value) {
+
+		return m.pure(value);
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, T>> flatMap(
+			Future<Either<GenericError, A>> from,
+			Function<A, Future<Either<GenericError, T>>> f) {
+
+		return m.flatMap(from, MeasuredStep.of(flatMap, f));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> raiseError(GenericError error) {
+
+		return m.raiseError(error);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> handleErrorWith(
+			Future<Either<GenericError, T>> from,
+			Function<GenericError, Future<Either<GenericError, T>>> f) {
+
+		return m.handleErrorWith(from, MeasuredStep.of(handleErrorWith, f));
+	}
+
+	@Override
+	public GenericError errorFrom(Throwable t) {
+
+		return m.errorFrom(t);
+	}
+
+	@Override
+	public ExecutionContext executionContext() {
+
+		return m.executionContext();
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, T>> map(Future<Either<GenericError, A>> from, Function<A, T> f) {
+
+		return m.map(from, f);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> handleError(Future<Either<GenericError, T>> from, Function<GenericError, T> f) {
+
+		return m.handleError(from, f);
+	}
+
+	@Override
+	public <A, B, T> Future<Either<GenericError, T>> map2(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			BiFunction<A, B, T> f) {
+
+		return map2.end(map2.start(), m.map2(fromA, fromB, f));
+	}
+
+	@Override
+	public <A, B, C, T> Future<Either<GenericError, T>> map3(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			Future<Either<GenericError, C>> fromC,
+			Function3<A, B, C, T> f) {
+
+		return map3.end(map3.start(), m.map3(fromA, fromB, fromC, f));
+	}
+
+	@Override
+	public <A, B, C, D, T> Future<Either<GenericError, T>> map4(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			Future<Either<GenericError, C>> fromC,
+			Future<Either<GenericError, D>> fromD,
+			Function4<A, B, C, D, T> f) {
+
+		return map4.end(map4.start(), m.map4(fromA, fromB, fromC, fromD, f));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, List<T>>> sequence(List<Future<Either<GenericError, T>>> l) {
+
+		return sequence.end(sequence.start(), m.sequence(l));
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, List<T>>> traverse(List<A> l, Function<A, Future<Either<GenericError, T>>> f) {
+
+		return traverse.end(traverse.start(), m.traverse(l, f));
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, List<T>>> parTraverse(List<A> l, int maxInFlight, Function<A, Future<Either<GenericError, T>>> f) {
+
+		return traverse.end(traverse.start(), m.parTraverse(l, maxInFlight, f));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> timeout(Future<Either<GenericError, T>> from, FiniteDuration after) {
+
+		return timeout.end(timeout.start(), m.timeout(from, after));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> retry(RetryPolicy<GenericError> policy, Supplier<Future<Either<GenericError, T>>> call) {
+
+		return retry.end(retry.start(), m.retry(policy, call));
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> hedge(HedgePolicy policy, Supplier<Future<Either<GenericError, T>>> call) {
+
+		return hedge.end(hedge.start(), m.hedge(policy, call));
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslFrom(Future<Either<GenericError, T>> future) {
+		return wrap(future, this);
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslLazyFrom(Future<Either<GenericError, T>> future) {
+		return wrapLazy(future, this, ec);
+	}
+}
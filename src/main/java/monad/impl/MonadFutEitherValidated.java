@@ -0,0 +1,169 @@
+package monad.impl;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import errors.GenericError;
+import errors.impl.CompoundError;
+import function.Function3;
+import function.Function4;
+import monad.FanIn;
+import monad.MonadFutEither;
+import monad.MonadFutEitherWrapper;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.util.Either;
+
+import static monad.MonadFutEitherWrapper.wrap;
+import static monad.MonadFutEitherWrapper.wrapLazy;
+
+/**
+ * Parallel applicative that accumulates errors (Validated).
+ *
+ * sequence, traverse, parTraverse and map2-map4 (also through the DSL) wait for all their inputs
+ * and return every GenericError in a single CompoundError, in input order.
+ * flatMap and handleErrorWith are sequential and behave like the wrapped monad.
+ */
+public class MonadFutEitherValidated implements MonadFutEither<GenericError> {
+
+	private final MonadFutEither<GenericError> m;
+
+	private final ExecutionContext ec;
+
+
+	/**
+	 * @param ec only used to run programs built with dslLazyFrom
+	 */
+	public MonadFutEitherValidated(MonadFutEither<GenericError> m, ExecutionContext ec) {
+		super();
+		this.m = m;
+		this.ec = ec;
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> pure(T value) {
+
+		return m.pure(value);
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, T>> flatMap(
+			Future<Either<GenericError, A>> from,
+			Function<A, Future<Either<GenericError, T>>> f) {
+
+		return m.flatMap(from, f);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> raiseError(GenericError error) {
+
+		return m.raiseError(error);
+	}
+
+	@Override
+	public <T> Future<Either<GenericError, T>> handleErrorWith(
+			Future<Either<GenericError, T>> from,
+			Function<GenericError, Future<Either<GenericError, T>>> f) {
+
+		return m.handleErrorWith(from, f);
+	}
+
+	@Override
+	public GenericError errorFrom(Throwable t) {
+
+		return m.errorFrom(t);
+	}
+
+	@Override
+	public ExecutionContext executionContext() {
+
+		return m.executionContext();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> Future<Either<GenericError, List<T>>> sequence(List<Future<Either<GenericError, T>>> l) {
+
+		return FanIn.accumulating(l, this::errorFrom, CompoundError::of, results -> (List<T>) Arrays.asList(results));
+	}
+
+	@Override
+	public <A, T> Future<Either<GenericError, List<T>>> traverse(List<A> l, Function<A, Future<Either<GenericError, T>>> f) {
+
+		return sequence(l.stream().map(f).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Starts at most maxInFlight calls at a time, but keeps going after a Left
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <A, T> Future<Either<GenericError, List<T>>> parTraverse(List<A> l, int maxInFlight, Function<A, Future<Either<GenericError, T>>> f) {
+
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+
+		return FanIn.boundedAccumulating(l, maxInFlight, f, this::errorFrom, CompoundError::of, results -> (List<T>) Arrays.asList(results));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <A, B, T> Future<Either<GenericError, T>> map2(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			BiFunction<A, B, T> f) {
+
+		return map(all(fromA, fromB), v -> f.apply((A) v[0], (B) v[1]));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <A, B, C, T> Future<Either<GenericError, T>> map3(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			Future<Either<GenericError, C>> fromC,
+			Function3<A, B, C, T> f) {
+
+		return map(all(fromA, fromB, fromC), v -> f.apply((A) v[0], (B) v[1], (C) v[2]));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <A, B, C, D, T> Future<Either<GenericError, T>> map4(
+			Future<Either<GenericError, A>> fromA,
+			Future<Either<GenericError, B>> fromB,
+			Future<Either<GenericError, C>> fromC,
+			Future<Either<GenericError, D>> fromD,
+			Function4<A, B, C, D, T> f) {
+
+		return map(all(fromA, fromB, fromC, fromD), v -> f.apply((A) v[0], (B) v[1], (C) v[2], (D) v[3]));
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslFrom(Future<Either<GenericError, T>> future) {
+		return wrap(future, this);
+	}
+
+	@Override
+	public <T> MonadFutEitherWrapper<GenericError, T> dslLazyFrom(Future<Either<GenericError, T>> future) {
+		return wrapLazy(future, this, ec);
+	}
+
+	@SafeVarargs
+	private final Future<Either<GenericError, Object[]>> all(Future<? extends Either<GenericError, ?>>... froms) {
+
+		final List<Future<? extends Either<GenericError, ?>>> l = new ArrayList<>(froms.length);
+
+		for (Future<? extends Either<GenericError, ?>> from : froms) {
+			l.add(from);
+		}
+
+		return FanIn.accumulating(l, this::errorFrom, CompoundError::of, Function.identity());
+	}
+}
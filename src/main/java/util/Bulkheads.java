@@ -0,0 +1,108 @@
+package util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import akka.dispatch.ExecutionContexts;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutor;
+
+/**
+ * Bounded execution contexts, one per dependency, so that a slow service only uses up its own threads.
+ * Work beyond the bounds is rejected with a RejectedExecutionException, which ServiceBase
+ * turns into a failed future and the monads into a Left(RejectedError).
+ */
+public final class Bulkheads {
+
+	private Bulkheads(){}
+
+	/**
+	 * A pool of its own with at most threads threads and queueCapacity waiting calls
+	 *
+	 * @param queueCapacity 0 rejects a call as soon as all the threads are busy
+	 */
+	public static ExecutionContextExecutor pool(String name, int threads, int queueCapacity) {
+
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory factory = r -> {
+			final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		final BlockingQueue<Runnable> queue = queueCapacity == 0
+				? new SynchronousQueue<>()
+				: new ArrayBlockingQueue<>(queueCapacity);
+
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				queue, factory, new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+
+		return ExecutionContexts.fromExecutorService(executor);
+	}
+
+	/**
+	 * At most maxConcurrent calls of ec at once, rejecting the rest without queueing them.
+	 * Cheaper than a pool when the dependency only needs a limit on a shared ec.
+	 */
+	public static ExecutionContextExecutor semaphore(ExecutionContext ec, int maxConcurrent) {
+
+		return new SemaphoreExecutionContext(ec, maxConcurrent);
+	}
+
+	private static final class SemaphoreExecutionContext implements ExecutionContextExecutor {
+
+		private final ExecutionContext ec;
+
+		private final Semaphore permits;
+
+		private SemaphoreExecutionContext(ExecutionContext ec, int maxConcurrent) {
+			this.ec = ec;
+			this.permits = new Semaphore(maxConcurrent);
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+
+			if (!permits.tryAcquire()) {
+				throw new RejectedExecutionException("Bulkhead full");
+			}
+
+			try {
+				ec.execute(() -> {
+					try {
+						runnable.run();
+					} finally {
+						permits.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		@Override
+		public void reportFailure(Throwable cause) {
+
+			ec.reportFailure(cause);
+		}
+
+		/**
+		 * Deprecated in Scala, but Scala 2.12's DefaultPromise.onComplete still calls it
+		 */
+		@SuppressWarnings("deprecation")
+		@Override
+		public ExecutionContext prepare() {
+
+			return this;
+		}
+	}
+
+}
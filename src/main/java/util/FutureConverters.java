@@ -0,0 +1,116 @@
+package util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import akka.dispatch.Futures;
+import scala.Function1;
+import scala.concurrent.Future;
+import scala.concurrent.impl.Promise.DefaultPromise;
+import scala.runtime.BoxedUnit;
+import scala.util.Failure;
+import scala.util.Try;
+
+/**
+ * Adapters between scala.concurrent.Future and java.util.concurrent.CompletableFuture.
+ *
+ * Converting back a future that was already converted returns the original object,
+ * and completed futures are converted without registering any callback.
+ */
+public final class FutureConverters {
+
+	private FutureConverters(){}
+
+	public static <T> CompletableFuture<T> toJava( Future<T> future ) {
+
+		if (future instanceof ScalaFromJava) {
+			return ((ScalaFromJava<T>) future).origin;
+		}
+
+		if (future.isCompleted()) {
+			final Try<T> t = future.value().get();
+			final CompletableFuture<T> cf = new CompletableFuture<>();
+			if (t.isFailure()) {
+				cf.completeExceptionally(((Failure<T>) t).exception());
+			} else {
+				cf.complete(t.get());
+			}
+			return cf;
+		}
+
+		final JavaFromScala<T> cf = new JavaFromScala<>(future);
+		future.onComplete(cf, SameThreadExecutionContext.INSTANCE);
+		return cf;
+	}
+
+	public static <T> Future<T> toScala( CompletableFuture<T> cf ) {
+
+		if (cf instanceof JavaFromScala) {
+			return ((JavaFromScala<T>) cf).origin;
+		}
+
+		if (cf.isDone()) {
+			try {
+				return Futures.successful(cf.getNow(null));
+			} catch (CompletionException e) {
+				return Futures.failed(unwrap(e));
+			} catch (RuntimeException e) {
+				return Futures.failed(e);
+			}
+		}
+
+		final ScalaFromJava<T> future = new ScalaFromJava<>(cf);
+		cf.whenComplete(future);
+		return future;
+	}
+
+	/**
+	 * The exception a CompletableFuture failed with, without its CompletionException wrapper
+	 */
+	public static Throwable unwrap( Throwable t ) {
+
+		return (t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null
+				? t.getCause()
+				: t;
+	}
+
+	private static final class JavaFromScala<T> extends CompletableFuture<T> implements Function1<Try<T>, BoxedUnit> {
+
+		private final Future<T> origin;
+
+		private JavaFromScala(Future<T> origin) {
+			this.origin = origin;
+		}
+
+		@Override
+		public BoxedUnit apply(Try<T> t) {
+			if (t.isFailure()) {
+				completeExceptionally(((Failure<T>) t).exception());
+			} else {
+				complete(t.get());
+			}
+			return BoxedUnit.UNIT;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class ScalaFromJava<T> extends DefaultPromise<T> implements BiConsumer<T, Throwable> {
+
+		private final CompletableFuture<T> origin;
+
+		private ScalaFromJava(CompletableFuture<T> origin) {
+			this.origin = origin;
+		}
+
+		@Override
+		public void accept(T value, Throwable t) {
+			if (t != null) {
+				failure(unwrap(t));
+			} else {
+				success(value);
+			}
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import scala.concurrent.Future;
+import scala.util.Try;
+
+/**
+ * Publishes f(s) for each s of a source, starting a call only when the subscriber has asked
+ * for its result and keeping at most concurrency calls started but not yet delivered,
+ * so memory does not grow with the size of the source.
+ *
+ * Unordered, results are delivered as they complete; ordered, in the order of the source.
+ * A call that fails (rather than returning a Left) ends the stream with onError.
+ *
+ * It can be subscribed only once, as it consumes the source.
+ */
+public final class FuturePublisher<S, T> implements Publisher<T> {
+
+	private Iterator<S> source;
+
+	private final Function<S, Future<T>> f;
+
+	private final int concurrency;
+
+	private final boolean ordered;
+
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	public FuturePublisher(Iterator<S> source, Function<S, Future<T>> f, int concurrency, boolean ordered) {
+
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+		}
+
+		this.source = source;
+		this.f = f;
+		this.concurrency = concurrency;
+		this.ordered = ordered;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber");
+		}
+
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {}
+				@Override
+				public void cancel() {}
+			});
+			subscriber.onError(new IllegalStateException("FuturePublisher allows a single subscriber"));
+			return;
+		}
+
+		final Emitter emitter = new Emitter(subscriber, source);
+		source = null;
+		subscriber.onSubscribe(emitter);
+		emitter.drain();
+	}
+
+	/**
+	 * A result of the ordered mode, delivered once it and all the slots before it are done
+	 */
+	private static final class Slot<T> {
+
+		private volatile Try<T> result;
+	}
+
+	/**
+	 * Everything but the callbacks runs in drain, one thread at a time (wip counts the pending drains).
+	 * Once cancelled or terminated, drain drops the subscriber, the source and the pending results.
+	 */
+	private final class Emitter implements Subscription {
+
+		private Subscriber<? super T> subscriber;
+
+		private Iterator<S> source;
+
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private final AtomicLong requested = new AtomicLong();
+
+		private final Queue<Slot<T>> slots = new ArrayDeque<>();
+
+		private final Queue<Try<T>> completed = new ConcurrentLinkedQueue<>();
+
+		private volatile boolean cancelled;
+
+		private volatile Throwable invalidRequest;
+
+		private long emitted;
+
+		private int outstanding;
+
+		private boolean exhausted;
+
+		private boolean done;
+
+		private Emitter(Subscriber<? super T> subscriber, Iterator<S> source) {
+			this.subscriber = subscriber;
+			this.source = source;
+		}
+
+		@Override
+		public void request(long n) {
+
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Rule 3.9: request must be positive: " + n);
+			} else {
+				requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+			}
+
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+
+			cancelled = true;
+			drain();
+		}
+
+		private void drain() {
+
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+
+			int missed = 1;
+
+			do {
+				if (!done) {
+					loop();
+				}
+				if (cancelled) {
+					release();
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void loop() {
+
+			while (!cancelled) {
+
+				if (invalidRequest != null) {
+					terminate(invalidRequest);
+					return;
+				}
+
+				final Try<T> next = emitted < requested.get()
+						? (ordered ? nextInOrder() : completed.poll())
+						: null;
+
+				if (next != null) {
+					if (next.isFailure()) {
+						terminate(next.failed().get());
+						return;
+					}
+					emitted++;
+					outstanding--;
+					subscriber.onNext(next.get());
+					continue;
+				}
+
+				if (exhausted || outstanding >= concurrency || emitted + outstanding >= requested.get()) {
+					break;
+				}
+
+				if (!startNext()) {
+					return;
+				}
+			}
+
+			if (exhausted && outstanding == 0 && !cancelled) {
+				done = true;
+				cancelled = true;
+				subscriber.onComplete();
+			}
+		}
+
+		private void release() {
+
+			done = true;
+			subscriber = null;
+			source = null;
+			slots.clear();
+			completed.clear();
+		}
+
+		/**
+		 * The head slot if it is done, and then it is removed
+		 */
+		private Try<T> nextInOrder() {
+
+			final Slot<T> head = slots.peek();
+
+			if (head == null || head.result == null) {
+				return null;
+			}
+
+			slots.poll();
+			return head.result;
+		}
+
+		/**
+		 * Starts the call for the next item of the source, false if the stream has ended
+		 */
+		private boolean startNext() {
+
+			final Future<T> call;
+
+			try {
+				if (!source.hasNext()) {
+					exhausted = true;
+					return true;
+				}
+				call = f.apply(source.next());
+			} catch (Throwable t) {
+				terminate(t);
+				return false;
+			}
+
+			outstanding++;
+
+			if (ordered) {
+				final Slot<T> slot = new Slot<>();
+				slots.add(slot);
+				call.onComplete(t -> {
+					slot.result = t;
+					drain();
+					return null;
+				}, SameThreadExecutionContext.INSTANCE);
+			} else {
+				call.onComplete(t -> {
+					completed.add(t);
+					drain();
+					return null;
+				}, SameThreadExecutionContext.INSTANCE);
+			}
+
+			return true;
+		}
+
+		private void terminate(Throwable t) {
+
+			done = true;
+			cancelled = true;
+			subscriber.onError(t);
+		}
+	}
+
+}
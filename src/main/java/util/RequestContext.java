@@ -0,0 +1,146 @@
+package util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * The deadline, cancellation flag and id of the request a thread is working for.
+ *
+ * It is held in a ThreadLocal: MonadFutEitherError carries it to the continuations it runs
+ * on its ec, and ServiceBase to the service calls, which are skipped once it is done.
+ */
+public final class RequestContext {
+
+	private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+	private final String requestId;
+
+	private final long deadlineNanos;
+
+	private final AtomicBoolean cancelled;
+
+	private RequestContext(String requestId, long deadlineNanos, AtomicBoolean cancelled) {
+		this.requestId = requestId;
+		this.deadlineNanos = deadlineNanos;
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * A request without a deadline
+	 */
+	public static RequestContext create(String requestId) {
+
+		return new RequestContext(requestId, Long.MAX_VALUE, new AtomicBoolean());
+	}
+
+	public static RequestContext create(String requestId, FiniteDuration budget) {
+
+		return new RequestContext(requestId, System.nanoTime() + budget.toNanos(), new AtomicBoolean());
+	}
+
+	/**
+	 * The context of the current thread, null if there is none
+	 */
+	public static RequestContext current() {
+
+		return CURRENT.get();
+	}
+
+	/**
+	 * Makes context the current one, returning the one it replaces for restore
+	 */
+	public static RequestContext attach(RequestContext context) {
+
+		final RequestContext previous = CURRENT.get();
+		if (previous != context) {
+			CURRENT.set(context);
+		}
+		return previous;
+	}
+
+	public static void restore(RequestContext previous) {
+
+		if (CURRENT.get() != previous) {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Runs body with this context as the current one
+	 */
+	public <T> T call(Supplier<T> body) {
+
+		final RequestContext previous = attach(this);
+		try {
+			return body.get();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * The same request with at most budget left: it shares the id and the cancellation flag
+	 */
+	public RequestContext withBudget(FiniteDuration budget) {
+
+		final long deadline = System.nanoTime() + budget.toNanos();
+		return deadline - deadlineNanos >= 0 ? this : new RequestContext(requestId, deadline, cancelled);
+	}
+
+	public String requestId() {
+
+		return requestId;
+	}
+
+	public FiniteDuration remaining() {
+
+		if (deadlineNanos == Long.MAX_VALUE) {
+			return FiniteDuration.create(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		return FiniteDuration.create(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	public boolean isExpired() {
+
+		return deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos >= 0;
+	}
+
+	public void cancel() {
+
+		cancelled.set(true);
+	}
+
+	public boolean isCancelled() {
+
+		return cancelled.get();
+	}
+
+	/**
+	 * Cancelled or expired: there is nobody waiting for the work of this request any more
+	 */
+	public boolean isDone() {
+
+		return cancelled.get() || isExpired();
+	}
+
+	/**
+	 * Why work of a done request was skipped: a TimeoutException or a CancellationException
+	 */
+	public Exception failure() {
+
+		return cancelled.get()
+				? new CancellationException("Request " + requestId + " was cancelled")
+				: new TimeoutException("Deadline of request " + requestId + " expired");
+	}
+
+	@Override
+	public String toString() {
+		return "RequestContext [requestId=" + requestId + ", remaining=" + remaining() + ", cancelled=" + cancelled + "]";
+	}
+
+}
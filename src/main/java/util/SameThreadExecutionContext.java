@@ -0,0 +1,83 @@
+package util;
+
+import java.util.ArrayDeque;
+
+import akka.dispatch.ExecutionContexts;
+import scala.concurrent.ExecutionContextExecutor;
+import scala.util.control.NonFatal;
+
+/**
+ * Runs callbacks on the thread that completes the future. Only for tiny,
+ * non-blocking callbacks such as completing a promise.
+ *
+ * Callbacks scheduled while another one is running on the same thread are queued
+ * and run afterwards, so long chains of promises complete without growing the stack.
+ * Non-fatal errors are reported and the queue goes on; a fatal one drops the queued
+ * callbacks of this thread before it is rethrown.
+ */
+public final class SameThreadExecutionContext implements ExecutionContextExecutor {
+
+	public static final SameThreadExecutionContext INSTANCE = new SameThreadExecutionContext();
+
+	private static final ThreadLocal<Trampoline> TRAMPOLINE = ThreadLocal.withInitial(Trampoline::new);
+
+	private SameThreadExecutionContext(){}
+
+	@Override
+	public void execute(Runnable runnable) {
+
+		final Trampoline trampoline = TRAMPOLINE.get();
+
+		if (trampoline.running) {
+			trampoline.queue.add(runnable);
+			return;
+		}
+
+		trampoline.running = true;
+
+		try {
+			Runnable next = runnable;
+			while (next != null) {
+				try {
+					next.run();
+				} catch (Throwable t) {
+					if (!NonFatal.apply(t)) {
+						trampoline.queue.clear();
+						throw t;
+					}
+					reportFailure(t);
+				}
+				next = trampoline.queue.poll();
+			}
+		} finally {
+			trampoline.running = false;
+		}
+
+	}
+
+	@Override
+	public void reportFailure(Throwable cause) {
+
+		ExecutionContexts.global().reportFailure(cause);
+
+	}
+
+	/**
+	 * Deprecated in Scala, but Scala 2.12's DefaultPromise.onComplete still calls it
+	 */
+	@SuppressWarnings("deprecation")
+	@Override
+	public ExecutionContextExecutor prepare() {
+
+		return this;
+
+	}
+
+	private static final class Trampoline {
+
+		private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+		private boolean running;
+	}
+
+}
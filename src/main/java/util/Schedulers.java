@@ -0,0 +1,60 @@
+package util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import akka.actor.LightArrayRevolverScheduler;
+import akka.actor.Scheduler;
+import akka.event.NoLogging$;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Hashed-wheel timers (Akka's LightArrayRevolverScheduler): scheduling and cancelling
+ * a task is O(1) and a single daemon thread serves all of them.
+ */
+public final class Schedulers {
+
+	private Schedulers(){}
+
+	private static final class Shared {
+
+		private static final Scheduler INSTANCE = create("monad-scheduler", ConfigFactory.defaultReference());
+	}
+
+	/**
+	 * The scheduler shared by timeouts, retries and the other timed operators.
+	 * Its resolution is akka.scheduler.tick-duration (10ms by default).
+	 */
+	public static Scheduler shared() {
+
+		return Shared.INSTANCE;
+	}
+
+	/**
+	 * A scheduler with its own thread and resolution
+	 *
+	 * @param ticksPerWheel must be a power of two
+	 */
+	public static Scheduler create(String name, FiniteDuration tick, int ticksPerWheel) {
+
+		return create(name, ConfigFactory.parseString(
+					"akka.scheduler.tick-duration = " + tick.toNanos() + "ns\n"
+					+ "akka.scheduler.ticks-per-wheel = " + ticksPerWheel)
+				.withFallback(ConfigFactory.defaultReference()));
+	}
+
+	private static Scheduler create(String name, Config config) {
+
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory threads = r -> {
+			final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		return new LightArrayRevolverScheduler(config, NoLogging$.MODULE$, threads);
+	}
+
+}
@@ -0,0 +1,133 @@
+package util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Trace id and a few correlation fields (e.g. for a logging MDC) of the current thread.
+ *
+ * It is immutable: with() returns a copy, so capturing it for another thread is a single
+ * ThreadLocal read and nothing is copied per hop. See TracingExecutionContext.
+ */
+public final class TraceContext {
+
+	private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+	private static final String[] NONE = new String[0];
+
+	private final String traceId;
+
+	/**
+	 * Keys and values, alternating: few enough that a linear scan beats a map
+	 */
+	private final String[] fields;
+
+	private TraceContext(String traceId, String[] fields) {
+		this.traceId = traceId;
+		this.fields = fields;
+	}
+
+	public static TraceContext start(String traceId) {
+
+		return new TraceContext(traceId, NONE);
+	}
+
+	/**
+	 * The context of the current thread, null if there is none
+	 */
+	public static TraceContext current() {
+
+		return CURRENT.get();
+	}
+
+	/**
+	 * Makes context the current one, returning the one it replaces for restore
+	 */
+	public static TraceContext attach(TraceContext context) {
+
+		final TraceContext previous = CURRENT.get();
+		if (previous != context) {
+			CURRENT.set(context);
+		}
+		return previous;
+	}
+
+	public static void restore(TraceContext previous) {
+
+		if (CURRENT.get() != previous) {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Runs body with this context as the current one
+	 */
+	public <T> T call(Supplier<T> body) {
+
+		final TraceContext previous = attach(this);
+		try {
+			return body.get();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * A copy with the field set
+	 */
+	public TraceContext with(String key, String value) {
+
+		for (int i = 0; i < fields.length; i += 2) {
+			if (fields[i].equals(key)) {
+				final String[] copy = fields.clone();
+				copy[i + 1] = value;
+				return new TraceContext(traceId, copy);
+			}
+		}
+
+		final String[] copy = new String[fields.length + 2];
+		System.arraycopy(fields, 0, copy, 0, fields.length);
+		copy[fields.length] = key;
+		copy[fields.length + 1] = value;
+		return new TraceContext(traceId, copy);
+	}
+
+	public String traceId() {
+
+		return traceId;
+	}
+
+	/**
+	 * The value of the field, null if it is not set
+	 */
+	public String get(String key) {
+
+		for (int i = 0; i < fields.length; i += 2) {
+			if (fields[i].equals(key)) {
+				return fields[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * traceId and the fields, e.g. to fill a logging MDC
+	 */
+	public Map<String, String> asMap() {
+
+		final Map<String, String> map = new LinkedHashMap<>();
+		map.put("traceId", traceId);
+		for (int i = 0; i < fields.length; i += 2) {
+			map.put(fields[i], fields[i + 1]);
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public String toString() {
+		return "TraceContext " + asMap();
+	}
+
+}
@@ -0,0 +1,102 @@
+package util;
+
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutor;
+
+/**
+ * Runs each task on ec with the TraceContext of the thread that submitted it.
+ *
+ * Future callbacks are submitted by the thread that completes the future, so for them the
+ * context is captured in prepare(), which Scala calls when the callback is registered.
+ *
+ * A hop costs a ThreadLocal read on submit, a small wrapper and a set and restore of the
+ * ThreadLocal on run; tasks submitted without a context go to ec as they are.
+ *
+ * Callbacks on SameThreadExecutionContext bypass it. Those that run user code (the next
+ * item of parTraverse, retries and hedges) capture the context themselves when they are
+ * created; the rest only complete promises.
+ */
+public final class TracingExecutionContext implements ExecutionContextExecutor {
+
+	private final ExecutionContext ec;
+
+	public TracingExecutionContext(ExecutionContext ec) {
+		this.ec = ec;
+	}
+
+	@Override
+	public void execute(Runnable runnable) {
+
+		final TraceContext context = TraceContext.current();
+		ec.execute(context == null ? runnable : new Traced(runnable, context));
+	}
+
+	@Override
+	public void reportFailure(Throwable cause) {
+
+		ec.reportFailure(cause);
+	}
+
+	/**
+	 * Deprecated in Scala, but Scala 2.12's DefaultPromise.onComplete still calls it,
+	 * and it is where callbacks capture their context
+	 */
+	@SuppressWarnings("deprecation")
+	@Override
+	public ExecutionContext prepare() {
+
+		final TraceContext context = TraceContext.current();
+		return context == null ? this : new Prepared(ec, context);
+	}
+
+	/**
+	 * Runs its tasks with the context of the thread that registered them
+	 */
+	private static final class Prepared implements ExecutionContextExecutor {
+
+		private final ExecutionContext ec;
+
+		private final TraceContext context;
+
+		private Prepared(ExecutionContext ec, TraceContext context) {
+			this.ec = ec;
+			this.context = context;
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+
+			ec.execute(new Traced(runnable, context));
+		}
+
+		@Override
+		public void reportFailure(Throwable cause) {
+
+			ec.reportFailure(cause);
+		}
+	}
+
+	private static final class Traced implements Runnable {
+
+		private final Runnable runnable;
+
+		private final TraceContext context;
+
+		private Traced(Runnable runnable, TraceContext context) {
+			this.runnable = runnable;
+			this.context = context;
+		}
+
+		@Override
+		public void run() {
+
+			final TraceContext previous = TraceContext.attach(context);
+			try {
+				runnable.run();
+			} finally {
+				TraceContext.restore(previous);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,668 @@
+package com.ing.f2etraining;
+
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import akka.util.Timeout;
+import errors.GenericError;
+import errors.impl.CompoundError;
+import errors.impl.MyError;
+import errors.impl.TimeoutError;
+import exercise.bookstore.bean.Author;
+import exercise.bookstore.business.SummaryService;
+import exercise.bookstore.business.impl.SummaryServiceImpl;
+import exercise.bookstore.service.decorator.InstrumentedServices;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.impl.ServiceSalesMock;
+import metrics.MetricsRegistry;
+import metrics.StageMetrics;
+import monad.MonadFutEither;
+import monad.MonadFutEitherWrapper;
+import monad.RetryBudget;
+import monad.RetryPolicy;
+import monad.impl.MonadFutEitherError;
+import monad.impl.MonadFutEitherInstrumented;
+import monad.impl.MonadFutEitherValidated;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+import scala.util.Either;
+import scala.util.Left;
+import scala.util.Right;
+import util.RequestContext;
+import util.TraceContext;
+import util.TracingExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MonadFutEitherCombinatorsTest {
+
+    private static final ExecutionContext EXECUTOR = ExecutionContexts.fromExecutor(Executors.newSingleThreadExecutor());
+    private static final Timeout TIMEOUT = new Timeout(Duration.create(5, "seconds"));
+
+    private static final MonadFutEither<GenericError> monad = new MonadFutEitherError(EXECUTOR);
+
+    @Test
+    public void sequenceKeepsOrderOfALargeList() throws Exception {
+        //given
+        List<Future<Either<GenericError, Integer>>> futures = IntStream.range(0, 100000)
+                .mapToObj(i -> Futures.<Either<GenericError, Integer>>successful(new Right<>(i)))
+                .collect(Collectors.toList());
+
+        //when
+        Future<Either<GenericError, List<Integer>>> result = monad.sequence(futures);
+
+        //then
+        List<Integer> values = Await.result(result, TIMEOUT.duration()).right().get();
+        assertThat(values).hasSize(100000);
+        assertThat(values.get(0)).isEqualTo(0);
+        assertThat(values.get(99999)).isEqualTo(99999);
+    }
+
+    @Test
+    public void sequenceStopsAtFirstLeftWithoutWaitingForTheRest() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> neverCompleted = Futures.promise();
+        List<Future<Either<GenericError, Integer>>> futures = Arrays.asList(
+                neverCompleted.future(),
+                Futures.successful(new Left<>(new MyError("Not found")))
+        );
+
+        //when
+        Either<GenericError, List<Integer>> result = Await.result(monad.sequence(futures), TIMEOUT.duration());
+
+        //then
+        assertThat(result.left().get().getDescription()).isEqualTo("Not found");
+    }
+
+    @Test
+    public void sequenceTurnsAFailedFutureIntoALeft() throws Exception {
+        //given
+        List<Future<Either<GenericError, Integer>>> futures = new ArrayList<>();
+        futures.add(Futures.successful(new Right<>(1)));
+        futures.add(Futures.failed(new RuntimeException("Boom")));
+
+        //when
+        Either<GenericError, List<Integer>> result = Await.result(monad.sequence(futures.iterator()), TIMEOUT.duration());
+
+        //then
+        assertThat(result.left().get().getDescription()).isEqualTo("Boom");
+    }
+
+    @Test
+    public void parTraverseKeepsAtMostMaxInFlightCallsRunning() throws Exception {
+        //given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> ids = IntStream.range(0, 200).boxed().collect(Collectors.toList());
+
+        //when
+        Future<Either<GenericError, List<Integer>>> result = monad.parTraverse(ids, 4, id -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return Futures.future(() -> {
+                Thread.sleep(1);
+                running.decrementAndGet();
+                return new Right<>(id * 2);
+            }, ExecutionContexts.global());
+        });
+
+        //then
+        List<Integer> values = Await.result(result, TIMEOUT.duration()).right().get();
+        assertThat(values).hasSize(200);
+        assertThat(values.get(199)).isEqualTo(398);
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void parTraverseDoesNotStartNewCallsAfterALeft() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        List<Integer> ids = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+        //when
+        Future<Either<GenericError, List<Integer>>> result = monad.parTraverse(ids, 1, id -> {
+            calls.incrementAndGet();
+            return id == 3 ? monad.raiseError(new MyError("Not found " + id)) : monad.pure(id);
+        });
+
+        //then
+        Either<GenericError, List<Integer>> values = Await.result(result, TIMEOUT.duration());
+        assertThat(values.left().get().getDescription()).isEqualTo("Not found 3");
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void mapChainsOverCompletedValuesRunInline() throws Exception {
+        //given
+        Future<Either<GenericError, Integer>> value = monad.pure(0);
+
+        //when
+        for (int i = 0; i < 10000; i++) {
+            value = monad.map(value, v -> v + 1);
+        }
+
+        //then
+        assertThat(value.isCompleted()).isTrue();
+        assertThat(Await.result(value, TIMEOUT.duration()).right().get()).isEqualTo(10000);
+    }
+
+    @Test
+    public void deeplyNestedFlatMapsOverCompletedValuesAreStackSafe() throws Exception {
+        //when
+        Future<Either<GenericError, Integer>> value = countDown(monad.pure(100000));
+
+        //then
+        assertThat(Await.result(value, TIMEOUT.duration()).right().get()).isEqualTo(0);
+    }
+
+    @Test
+    public void flatMapOverARunningFutureTurnsExceptionsIntoLefts() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> running = Futures.promise();
+        Promise<Either<GenericError, Integer>> inner = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> thrown = monad.flatMap(running.future(), v -> {
+            throw new IllegalStateException("Thrown in flatMap");
+        });
+        Future<Either<GenericError, Integer>> failed = monad.flatMap(running.future(), v -> inner.future());
+        running.success(new Right<>(1));
+        inner.failure(new RuntimeException("Inner failed"));
+
+        //then
+        assertThat(Await.result(thrown, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Thrown in flatMap");
+        assertThat(Await.result(failed, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Inner failed");
+    }
+
+    @Test
+    public void continuationsThatThrowAnErrorCompleteWithALeft() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> running = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> inline = monad.flatMap(monad.pure(1), v -> {
+            throw new AssertionError("Inline");
+        });
+        Future<Either<GenericError, Integer>> later = monad.flatMap(running.future(), v -> {
+            throw new AssertionError("Later");
+        });
+        Future<Either<GenericError, Integer>> lazy = monad.dslLazyFrom(running.future())
+                .<Integer>flatMap(v -> {
+                    throw new AssertionError("Lazy");
+                })
+                .value();
+        Future<Either<GenericError, List<Integer>>> traversed = monad.parTraverse(Arrays.asList(1, 2), 1, v -> {
+            throw new AssertionError("Traversed");
+        });
+        Future<Either<GenericError, Integer>> retried = monad.retry(RetryPolicy.<GenericError>exponential(3,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(1, TimeUnit.MILLISECONDS)), () -> {
+            throw new AssertionError("Retried");
+        });
+        running.success(new Right<>(1));
+
+        //then
+        assertThat(Await.result(inline, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Inline");
+        assertThat(Await.result(later, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Later");
+        assertThat(Await.result(lazy, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Lazy");
+        assertThat(Await.result(traversed, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Traversed");
+        assertThat(Await.result(retried, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Retried");
+    }
+
+    @Test
+    public void lazyDslRunsNothingUntilValueIsCalled() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        MonadFutEitherWrapper<GenericError, Integer> program = monad.dslLazyFrom(monad.pure(1));
+        for (int i = 0; i < 100000; i++) {
+            program = program.map(v -> calls.incrementAndGet() > 0 ? v + 1 : v);
+        }
+        MonadFutEitherWrapper<GenericError, String> described = program
+                .flatMap(v -> Futures.future(() -> new Right<>(v), ExecutionContexts.global()))
+                .flatMap(v -> v > 0 ? monad.raiseError(new MyError("Too big " + v)) : monad.pure(v))
+                .map(String::valueOf)
+                .handleError(GenericError::getDescription);
+
+        //when
+        int callsBeforeValue = calls.get();
+        Either<GenericError, String> result = Await.result(described.value(), TIMEOUT.duration());
+
+        //then
+        assertThat(callsBeforeValue).isEqualTo(0);
+        assertThat(result.right().get()).isEqualTo("Too big 100001");
+        assertThat(described.value()).isSameAs(described.value());
+    }
+
+    @Test
+    public void map3FailsAsSoonAsAnyInputFails() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> slow = Futures.promise();
+        Promise<Either<GenericError, Integer>> failing = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> sum = monad.map3(slow.future(), monad.pure(1), failing.future(),
+                (a, b, c) -> a + b + c);
+        failing.failure(new RuntimeException("Author lookup failed"));
+
+        //then
+        assertThat(Await.result(sum, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Author lookup failed");
+    }
+
+    @Test
+    public void map4CombinesAllInputs() throws Exception {
+        //when
+        Future<Either<GenericError, Integer>> sum = monad.map4(monad.pure(1), monad.pure(2),
+                Futures.future(() -> new Right<>(3), ExecutionContexts.global()), monad.pure(4),
+                (a, b, c, d) -> a + b + c + d);
+
+        //then
+        assertThat(Await.result(sum, TIMEOUT.duration()).right().get()).isEqualTo(10);
+    }
+
+    @Test
+    public void validatedSequenceCollectsEveryErrorInInputOrder() throws Exception {
+        //given
+        MonadFutEither<GenericError> validated = new MonadFutEitherValidated(monad, EXECUTOR);
+        List<Future<Either<GenericError, Integer>>> futures = Arrays.asList(
+                Futures.future(() -> new Left<>(new MyError("Chapter 1 not found")), ExecutionContexts.global()),
+                monad.pure(2),
+                Futures.failed(new RuntimeException("Chapter 3 failed")),
+                monad.raiseError(new MyError("Chapter 4 not found"))
+        );
+
+        //when
+        Either<GenericError, List<Integer>> result = Await.result(validated.sequence(futures), TIMEOUT.duration());
+
+        //then
+        assertThat(result.left().get()).isInstanceOf(CompoundError.class);
+        assertThat(result.left().get().getDescription())
+                .isEqualTo("Chapter 1 not found; Chapter 3 failed; Chapter 4 not found");
+    }
+
+    @Test
+    public void validatedDslCollectsErrorsOfAllBranches() throws Exception {
+        //given
+        MonadFutEither<GenericError> validated = new MonadFutEitherValidated(monad, EXECUTOR);
+        Future<Either<GenericError, Integer>> sales = monad.raiseError(new MyError("Sales not found"));
+        Future<Either<GenericError, Integer>> author = monad.raiseError(new MyError("Author not found"));
+
+        //when
+        Future<Either<GenericError, Integer>> eager = validated.dslFrom(monad.<Integer>raiseError(new MyError("Chapters not found")))
+                .map2(sales, Integer::sum)
+                .map2(author, Integer::sum)
+                .value();
+        Future<Either<GenericError, Integer>> lazy = validated.dslLazyFrom(monad.pure(1))
+                .map3(sales, author, (a, b, c) -> a + b + c)
+                .value();
+
+        //then
+        assertThat(((CompoundError) Await.result(eager, TIMEOUT.duration()).left().get()).getErrors()).hasSize(3);
+        assertThat(Await.result(eager, TIMEOUT.duration()).left().get().getDescription())
+                .isEqualTo("Chapters not found; Sales not found; Author not found");
+        assertThat(Await.result(lazy, TIMEOUT.duration()).left().get().getDescription())
+                .isEqualTo("Sales not found; Author not found");
+    }
+
+    @Test
+    public void validatedParTraverseBoundsCallsAndCollectsEveryError() throws Exception {
+        //given
+        MonadFutEither<GenericError> validated = new MonadFutEitherValidated(monad, EXECUTOR);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> ids = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+
+        //when
+        Future<Either<GenericError, List<Integer>>> result = validated.parTraverse(ids, 3, id -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return Futures.future(() -> {
+                Thread.sleep(1);
+                running.decrementAndGet();
+                return id % 20 == 7 ? new Left<>(new MyError("Not found " + id)) : new Right<>(id);
+            }, ExecutionContexts.global());
+        });
+
+        //then
+        assertThat(Await.result(result, TIMEOUT.duration()).left().get().getDescription())
+                .isEqualTo("Not found 7; Not found 27; Not found 47");
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    public void timeoutCompletesWithATimeoutError() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> hung = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> limited = monad.dslFrom(hung.future())
+                .timeout(FiniteDuration.create(50, TimeUnit.MILLISECONDS))
+                .value();
+
+        //then
+        GenericError error = Await.result(limited, TIMEOUT.duration()).left().get();
+        assertThat(error).isInstanceOf(TimeoutError.class);
+        assertThat(error.getDescription()).isEqualTo("Timed out after 50 milliseconds");
+    }
+
+    @Test
+    public void lazyTimeoutStartsWhenTheProgramRuns() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> hung = Futures.promise();
+        MonadFutEitherWrapper<GenericError, String> program = monad.dslLazyFrom(monad.pure(1))
+                .flatMap(v -> hung.future())
+                .timeout(FiniteDuration.create(50, TimeUnit.MILLISECONDS))
+                .map(String::valueOf)
+                .handleError(GenericError::getDescription);
+
+        //when
+        Future<Either<GenericError, String>> limited = program.value();
+
+        //then
+        assertThat(limited.isCompleted()).isFalse();
+        assertThat(Await.result(limited, TIMEOUT.duration()).right().get()).isEqualTo("Timed out after 50 milliseconds");
+        assertThat(program.value()).isSameAs(limited);
+    }
+
+    @Test
+    public void timeoutKeepsTheResultWhenItArrivesInTime() throws Exception {
+        //given
+        Promise<Either<GenericError, Integer>> running = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> limited = monad.timeout(running.future(), FiniteDuration.create(5, TimeUnit.SECONDS));
+        running.success(new Right<>(7));
+
+        //then
+        assertThat(Await.result(limited, TIMEOUT.duration()).right().get()).isEqualTo(7);
+    }
+
+    @Test
+    public void retryCallsAgainUntilTheCallSucceeds() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        RetryPolicy<GenericError> policy = RetryPolicy.exponential(5,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(20, TimeUnit.MILLISECONDS));
+
+        //when
+        Future<Either<GenericError, Integer>> result = monad.dslFrom(monad.pure(4))
+                .flatMapRetrying(policy, id -> calls.incrementAndGet() < 3
+                        ? Futures.failed(new RuntimeException("Exception to get Book"))
+                        : monad.pure(id))
+                .value();
+
+        //then
+        assertThat(Await.result(result, TIMEOUT.duration()).right().get()).isEqualTo(4);
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void retriesRunOnTheMonadExecutionContextNotOnTheTimer() throws Exception {
+        //given
+        List<String> threads = new CopyOnWriteArrayList<>();
+        RetryPolicy<GenericError> policy = RetryPolicy.exponential(3,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(5, TimeUnit.MILLISECONDS));
+
+        //when
+        Future<Either<GenericError, Integer>> result = monad.retry(policy, () -> {
+            threads.add(Thread.currentThread().getName());
+            return threads.size() < 3 ? monad.raiseError(new MyError("Not yet")) : monad.pure(1);
+        });
+
+        //then
+        assertThat(Await.result(result, TIMEOUT.duration()).right().get()).isEqualTo(1);
+        assertThat(threads).hasSize(3);
+        assertThat(threads.subList(1, 3)).noneMatch(name -> name.startsWith("monad-scheduler"));
+    }
+
+    @Test
+    public void retryStopsOnErrorsThatAreNotRetryable() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        RetryPolicy<GenericError> policy = RetryPolicy.<GenericError>exponential(5,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(20, TimeUnit.MILLISECONDS))
+                .retryingOn(e -> e instanceof TimeoutError);
+
+        //when
+        Future<Either<GenericError, Integer>> result = monad.retry(policy, () -> {
+            calls.incrementAndGet();
+            return monad.raiseError(new MyError("Book not found"));
+        });
+
+        //then
+        assertThat(Await.result(result, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Book not found");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void retryBudgetLimitsRetriesAcrossCalls() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        RetryPolicy<GenericError> policy = RetryPolicy.<GenericError>exponential(3,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(1, TimeUnit.MILLISECONDS))
+                .withBudget(new RetryBudget(0, 2));
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            Await.result(monad.retry(policy, () -> {
+                calls.incrementAndGet();
+                return monad.raiseError(new MyError("Down"));
+            }), TIMEOUT.duration());
+        }
+
+        //then
+        assertThat(calls.get()).isEqualTo(5 + 2);
+    }
+
+    @Test
+    public void requestContextFollowsTheStagesAndSkipsExpiredServiceCalls() throws Exception {
+        //given
+        RequestContext context = RequestContext.create("request-1", FiniteDuration.create(50, TimeUnit.MILLISECONDS));
+        Promise<Either<GenericError, Integer>> slow = Futures.promise();
+        AtomicInteger authorsCalled = new AtomicInteger();
+        ServiceAuthorMock authors = new ServiceAuthorMock() {
+            @Override
+            public Either<GenericError, Author> findAuthor(String id) {
+                authorsCalled.incrementAndGet();
+                return super.findAuthor(id);
+            }
+        };
+
+        //when
+        Future<Either<GenericError, String>> seen = context.call(() -> monad.map(slow.future(),
+                n -> RequestContext.current().requestId()));
+        Future<Either<GenericError, Author>> late = context.call(() -> monad.flatMap(slow.future(),
+                n -> authors.getAuthor("author-book-" + n)));
+        Thread.sleep(60);
+        slow.success(new Right<>(1));
+
+        //then
+        assertThat(Await.result(seen, TIMEOUT.duration()).right().get()).isEqualTo("request-1");
+        assertThat(Await.result(late, TIMEOUT.duration()).left().get()).isInstanceOf(TimeoutError.class);
+        assertThat(authorsCalled.get()).isZero();
+        assertThat(RequestContext.current()).isNull();
+    }
+
+    @Test
+    public void lazyProgramsRunEveryStepInTheRequestContextTheyWereBuiltIn() throws Exception {
+        //given
+        RequestContext context = RequestContext.create("request-lazy", FiniteDuration.create(50, TimeUnit.MILLISECONDS));
+        Promise<Either<GenericError, Integer>> slow = Futures.promise();
+        Promise<Either<GenericError, Integer>> slower = Futures.promise();
+        AtomicInteger authorsCalled = new AtomicInteger();
+        ServiceAuthorMock authors = new ServiceAuthorMock() {
+            @Override
+            public Either<GenericError, Author> findAuthor(String id) {
+                authorsCalled.incrementAndGet();
+                return super.findAuthor(id);
+            }
+        };
+        List<String> seen = new CopyOnWriteArrayList<>();
+
+        //when
+        MonadFutEitherWrapper<GenericError, Author> program = context.call(() -> monad.dslLazyFrom(slow.future())
+                .flatMap(n -> {
+                    seen.add(RequestContext.current().requestId());
+                    return slower.future();
+                })
+                .flatMap(n -> {
+                    seen.add(RequestContext.current().requestId());
+                    return authors.getAuthor("author-book-" + n);
+                }));
+        Future<Either<GenericError, Author>> late = program.value();
+        slow.success(new Right<>(1));
+        Thread.sleep(60);
+        slower.success(new Right<>(1));
+
+        //then
+        assertThat(Await.result(late, TIMEOUT.duration()).left().get()).isInstanceOf(TimeoutError.class);
+        assertThat(seen).containsExactly("request-lazy", "request-lazy");
+        assertThat(authorsCalled.get()).isZero();
+        assertThat(RequestContext.current()).isNull();
+    }
+
+    @Test
+    public void retriesAndParTraverseRunInTheRequestContextAndStopWhenItIsDone() throws Exception {
+        //given
+        RequestContext context = RequestContext.create("request-2");
+        List<String> seen = new CopyOnWriteArrayList<>();
+        RetryPolicy<GenericError> policy = RetryPolicy.exponential(5,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(5, TimeUnit.MILLISECONDS));
+        Promise<Either<GenericError, String>> first = Futures.promise();
+
+        //when
+        Future<Either<GenericError, List<String>>> traversed = context.call(() -> monad.parTraverse(Arrays.asList(1, 2), 1,
+                n -> n == 1 ? first.future() : monad.pure(RequestContext.current().requestId())));
+        first.success(new Right<>("first"));
+        Future<Either<GenericError, Integer>> retried = context.call(() -> monad.retry(policy, () -> {
+            seen.add(RequestContext.current().requestId());
+            if (seen.size() == 2) {
+                context.cancel();
+            }
+            return monad.raiseError(new MyError("Not yet"));
+        }));
+
+        //then
+        assertThat(Await.result(traversed, TIMEOUT.duration()).right().get()).containsExactly("first", "request-2");
+        assertThat(Await.result(retried, TIMEOUT.duration()).isLeft()).isTrue();
+        assertThat(seen).containsExactly("request-2", "request-2");
+    }
+
+    @Test
+    public void instrumentedMonadAndServicesRecordEveryStage() throws Exception {
+        //given
+        MetricsRegistry registry = new MetricsRegistry();
+        MonadFutEitherInstrumented instrumented = new MonadFutEitherInstrumented(monad, registry, EXECUTOR);
+        SummaryService<GenericError> srvSummary = new SummaryServiceImpl(
+                InstrumentedServices.book(new ServiceBookMock(), registry),
+                InstrumentedServices.sales(new ServiceSalesMock(), registry),
+                InstrumentedServices.chapter(new ServiceChapterFutEitherMock(), registry),
+                InstrumentedServices.author(new ServiceAuthorMock(), registry),
+                instrumented.named("getSummary"));
+
+        //when
+        Await.result(srvSummary.getSummary(1), TIMEOUT.duration());
+        Await.result(srvSummary.getSummary(4), TIMEOUT.duration());
+        Map<String, StageMetrics.Snapshot> stages = registry.snapshot().stream()
+                .collect(Collectors.toMap(StageMetrics.Snapshot::name, snapshot -> snapshot));
+
+        //then
+        StageMetrics.Snapshot books = stages.get("ServiceBook.getBook");
+        assertThat(books.rights()).isEqualTo(1);
+        assertThat(books.exceptions()).isEqualTo(1);
+        assertThat(books.inFlight()).isZero();
+        assertThat(books.latency().count()).isEqualTo(2);
+        assertThat(stages.get("ServiceChapter.getChapter").rights()).isEqualTo(5);
+        assertThat(stages.get("getSummary.flatMap").rights()).isEqualTo(1);
+        assertThat(stages.get("getSummary.map3").rights()).isEqualTo(1);
+        assertThat(registry.export()).contains("ServiceBook.getBook rights=1 lefts=0 exceptions=1 inFlight=0");
+    }
+
+    @Test
+    public void instrumentedContinuationsRecordRunningResultsAndThrownErrors() throws Exception {
+        //given
+        MetricsRegistry registry = new MetricsRegistry();
+        MonadFutEitherInstrumented instrumented = new MonadFutEitherInstrumented(monad, registry, EXECUTOR);
+        Promise<Either<GenericError, Integer>> running = Futures.promise();
+
+        //when
+        Future<Either<GenericError, Integer>> waiting = instrumented.flatMap(monad.pure(1), v -> running.future());
+        long inFlightWhileRunning = registry.stage("flatMap").snapshot().inFlight();
+        running.success(new Right<>(2));
+        Future<Either<GenericError, Integer>> thrown = instrumented.flatMap(monad.pure(1), v -> {
+            throw new AssertionError("Thrown in flatMap");
+        });
+        Future<Either<GenericError, Integer>> recovered = instrumented.handleErrorWith(
+                monad.raiseError(new MyError("Not found")), e -> monad.pure(3));
+
+        //then
+        assertThat(Await.result(waiting, TIMEOUT.duration()).right().get()).isEqualTo(2);
+        assertThat(Await.result(thrown, TIMEOUT.duration()).left().get().getDescription()).isEqualTo("Thrown in flatMap");
+        assertThat(Await.result(recovered, TIMEOUT.duration()).right().get()).isEqualTo(3);
+        StageMetrics.Snapshot flatMaps = registry.stage("flatMap").snapshot();
+        assertThat(inFlightWhileRunning).isEqualTo(1);
+        assertThat(flatMaps.rights()).isEqualTo(1);
+        assertThat(flatMaps.exceptions()).isEqualTo(1);
+        assertThat(flatMaps.inFlight()).isZero();
+        assertThat(registry.stage("handleErrorWith").snapshot().rights()).isEqualTo(1);
+    }
+
+    @Test
+    public void traceContextFollowsContinuationsToTheTracingExecutionContext() throws Exception {
+        //given
+        MonadFutEither<GenericError> traced = new MonadFutEitherError(new TracingExecutionContext(EXECUTOR));
+        TraceContext context = TraceContext.start("trace-1").with("user", "reader");
+        Promise<Either<GenericError, Integer>> slow = Futures.promise();
+
+        //when
+        Future<Either<GenericError, String>> seen = context.call(() -> traced.flatMap(slow.future(),
+                n -> traced.pure(TraceContext.current().traceId() + "/" + TraceContext.current().get("user"))));
+        Future<Either<GenericError, Boolean>> untraced = traced.flatMap(slow.future(),
+                n -> traced.pure(TraceContext.current() == null));
+        slow.success(new Right<>(1));
+
+        //then
+        assertThat(Await.result(seen, TIMEOUT.duration()).right().get()).isEqualTo("trace-1/reader");
+        assertThat(Await.result(untraced, TIMEOUT.duration()).right().get()).isTrue();
+        assertThat(context.with("user", "writer").get("user")).isEqualTo("writer");
+        assertThat(context.get("user")).isEqualTo("reader");
+    }
+
+    @Test
+    public void traceContextFollowsRetriesFiredByTheTimer() throws Exception {
+        //given
+        MonadFutEither<GenericError> traced = new MonadFutEitherError(new TracingExecutionContext(EXECUTOR));
+        TraceContext context = TraceContext.start("trace-2");
+        List<String> seen = new CopyOnWriteArrayList<>();
+        RetryPolicy<GenericError> policy = RetryPolicy.exponential(3,
+                FiniteDuration.create(1, TimeUnit.MILLISECONDS), FiniteDuration.create(5, TimeUnit.MILLISECONDS));
+
+        //when
+        Future<Either<GenericError, Integer>> result = context.call(() -> traced.retry(policy, () -> {
+            seen.add(TraceContext.current() == null ? "none" : TraceContext.current().traceId());
+            return seen.size() < 3 ? traced.raiseError(new MyError("Not yet")) : traced.pure(1);
+        }));
+
+        //then
+        assertThat(Await.result(result, TIMEOUT.duration()).right().get()).isEqualTo(1);
+        assertThat(seen).containsExactly("trace-2", "trace-2", "trace-2");
+    }
+
+    private Future<Either<GenericError, Integer>> countDown(Future<Either<GenericError, Integer>> from) {
+
+        return monad.flatMap(from, n -> n == 0 ? monad.pure(0) : countDown(monad.pure(n - 1)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.ing.f2etraining;
+
+import akka.dispatch.Futures;
+import errors.GenericError;
+import exercise.bookstore.bean.Summary;
+import exercise.bookstore.business.SummaryService;
+import exercise.bookstore.business.impl.SummaryServiceImpl;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.impl.ServiceSalesMock;
+import monad.MonadFutEither;
+import monad.impl.MonadFutEitherCompletable;
+import org.junit.After;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+import scala.util.Either;
+import util.FutureConverters;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MonadFutEitherCompletableTest {
+
+    private static final Duration TIMEOUT = Duration.apply(5, TimeUnit.SECONDS);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final MonadFutEither<GenericError> monad = new MonadFutEitherCompletable(executor);
+
+    private final SummaryService<GenericError> srvSummary = new SummaryServiceImpl(
+            new ServiceBookMock(),
+            new ServiceSalesMock(),
+            new ServiceChapterFutEitherMock(),
+            new ServiceAuthorMock(),
+            monad);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void summaryServiceRunsOnCompletableFutures() throws Exception {
+        //when
+        Either<GenericError, Summary> res = Await.result(srvSummary.getSummary(1), TIMEOUT);
+
+        //then
+        assertThat(res.right().get().getBook().getNameBook()).isEqualTo("Book 1");
+        assertThat(res.right().get().getChapter()).hasSize(5);
+    }
+
+    @Test
+    public void exceptionsInServicesBecomeLefts() throws Exception {
+        //when
+        Either<GenericError, Summary> res = Await.result(srvSummary.getSummary(4), TIMEOUT);
+
+        //then
+        assertThat(res.left().get().getDescription()).isEqualTo("It is impossible to get book summary");
+    }
+
+    @Test
+    public void continuationsThatThrowAnErrorCompleteWithALeft() throws Exception {
+        //when
+        Future<Either<GenericError, Integer>> res = monad.flatMap(monad.pure(1), v -> {
+            throw new AssertionError("Thrown in flatMap");
+        });
+
+        //then
+        assertThat(Await.result(res, TIMEOUT).left().get().getDescription()).isEqualTo("Thrown in flatMap");
+    }
+
+    @Test
+    public void convertingBackReturnsTheOriginalFuture() {
+        //given
+        Promise<String> promise = Futures.promise();
+        CompletableFuture<String> cf = new CompletableFuture<>();
+
+        //then
+        assertThat(FutureConverters.toScala(FutureConverters.toJava(promise.future()))).isSameAs(promise.future());
+        assertThat(FutureConverters.toJava(FutureConverters.toScala(cf))).isSameAs(cf);
+    }
+}
@@ -0,0 +1,682 @@
+package com.ing.f2etraining;
+
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import errors.GenericError;
+import errors.impl.CircuitOpenError;
+import errors.impl.RejectedError;
+import errors.impl.TimeoutError;
+import exercise.bookstore.bean.Author;
+import exercise.bookstore.bean.Book;
+import exercise.bookstore.bean.Chapter;
+import exercise.bookstore.bean.Sales;
+import exercise.bookstore.service.ServiceAuthor;
+import exercise.bookstore.service.ServiceBook;
+import exercise.bookstore.service.ServiceChapter;
+import exercise.bookstore.service.ServiceSales;
+import exercise.bookstore.service.decorator.AsyncCache;
+import exercise.bookstore.service.decorator.CachePolicy;
+import exercise.bookstore.service.decorator.CachedServices;
+import exercise.bookstore.service.decorator.ChapterLoader;
+import exercise.bookstore.service.decorator.CircuitBreaker;
+import exercise.bookstore.service.decorator.CircuitBreakerServices;
+import exercise.bookstore.service.decorator.HedgedServices;
+import exercise.bookstore.service.decorator.InstrumentedServices;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.simulation.LatencyDistribution;
+import exercise.bookstore.service.simulation.SimulatedServices;
+import exercise.bookstore.service.simulation.SimulationProfile;
+import metrics.MetricsRegistry;
+import monad.HedgePolicy;
+import monad.MonadFutEither;
+import monad.RetryBudget;
+import monad.impl.MonadFutEitherError;
+import org.junit.Test;
+import util.Bulkheads;
+import util.RequestContext;
+import util.SameThreadExecutionContext;
+import util.Schedulers;
+import scala.concurrent.Await;
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.runtime.BoxedUnit;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+import scala.util.Either;
+import scala.util.Right;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceDecoratorsTest {
+
+    private static final Duration TIMEOUT = Duration.apply(5, TimeUnit.SECONDS);
+
+    private final MonadFutEither<GenericError> monad = new MonadFutEitherError(ExecutionContexts.global());
+
+    @Test
+    public void hedgedServiceReturnsTheSecondAttemptWhenTheFirstHangs() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        Promise<Either<GenericError, Chapter>> hung = Futures.promise();
+        ServiceChapter<GenericError> slowOnce = id -> calls.incrementAndGet() == 1
+                ? hung.future()
+                : monad.pure(new Chapter("Title chapter - " + id));
+        ServiceChapter<GenericError> hedged = HedgedServices.chapter(slowOnce, monad,
+                HedgePolicy.atPercentile(95, FiniteDuration.create(20, TimeUnit.MILLISECONDS)));
+
+        //when
+        Future<Either<GenericError, Chapter>> chapter = hedged.getChapter(1001L);
+
+        //then
+        assertThat(Await.result(chapter, TIMEOUT).right().get().getTitle()).isEqualTo("Title chapter - 1001");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void hungAttemptsThatLoseToAHedgeStillRaiseTheDelay() throws Exception {
+        //given
+        Set<Long> started = ConcurrentHashMap.newKeySet();
+        Promise<Either<GenericError, Chapter>> hung = Futures.promise();
+        ServiceChapter<GenericError> firstHangs = id -> started.add(id)
+                ? hung.future()
+                : monad.pure(new Chapter("Title chapter - " + id));
+        HedgePolicy policy = HedgePolicy.atPercentile(95, FiniteDuration.create(2, TimeUnit.MILLISECONDS))
+                .withBudget(RetryBudget.unlimited());
+        ServiceChapter<GenericError> hedged = HedgedServices.chapter(firstHangs, monad, policy);
+
+        //when
+        List<Future<Either<GenericError, Chapter>>> chapters = new ArrayList<>();
+        for (long id = 0; id < 128; id++) {
+            chapters.add(hedged.getChapter(id));
+        }
+        for (Future<Either<GenericError, Chapter>> chapter : chapters) {
+            Await.result(chapter, TIMEOUT);
+        }
+
+        //then
+        assertThat(policy.delay().toMillis()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void hedgingStopsWhenTheBudgetIsSpent() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        ServiceChapter<GenericError> slow = id -> {
+            calls.incrementAndGet();
+            Promise<Either<GenericError, Chapter>> answer = Futures.promise();
+            Schedulers.shared().scheduleOnce(FiniteDuration.create(30, TimeUnit.MILLISECONDS),
+                    () -> answer.success(new Right<>(new Chapter("Title chapter - " + id))), ExecutionContexts.global());
+            return answer.future();
+        };
+        ServiceChapter<GenericError> hedged = HedgedServices.chapter(slow, monad,
+                HedgePolicy.atPercentile(95, FiniteDuration.create(1, TimeUnit.MILLISECONDS))
+                        .withBudget(new RetryBudget(0, 1)));
+
+        //when
+        for (long id = 0; id < 3; id++) {
+            Await.result(hedged.getChapter(id), TIMEOUT);
+        }
+
+        //then
+        assertThat(calls.get()).isEqualTo(3 + 1);
+    }
+
+    @Test
+    public void openCircuitAnswersWithoutCallingTheService() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        ServiceBook<GenericError> failing = id -> {
+            calls.incrementAndGet();
+            return Futures.failed(new RuntimeException("Exception to get Book"));
+        };
+        CircuitBreaker<GenericError> breaker = new CircuitBreaker<>(monad, 3,
+                FiniteDuration.create(1, TimeUnit.SECONDS), FiniteDuration.create(1, TimeUnit.MINUTES));
+        ServiceBook<GenericError> guarded = CircuitBreakerServices.book(failing, breaker);
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            Await.ready(guarded.getBook(4), TIMEOUT);
+        }
+        Future<Either<GenericError, Book>> rejected = guarded.getBook(4);
+
+        //then
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(rejected.isCompleted()).isTrue();
+        assertThat(Await.result(rejected, TIMEOUT).left().get()).isInstanceOf(CircuitOpenError.class);
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void halfOpenCircuitClosesAfterASuccessfulTrial() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        ServiceBook<GenericError> recovering = id -> calls.incrementAndGet() == 1
+                ? Futures.failed(new RuntimeException("Exception to get Book"))
+                : monad.pure(new Book("Book " + id, "author-book-" + id, Collections.emptyList()));
+        CircuitBreaker<GenericError> breaker = new CircuitBreaker<>(monad, 1,
+                FiniteDuration.create(1, TimeUnit.SECONDS), FiniteDuration.create(10, TimeUnit.MILLISECONDS));
+        ServiceBook<GenericError> guarded = CircuitBreakerServices.book(recovering, breaker);
+
+        //when
+        Await.ready(guarded.getBook(1), TIMEOUT);
+        Thread.sleep(20);
+        Either<GenericError, Book> trial = Await.result(guarded.getBook(1), TIMEOUT);
+
+        //then
+        assertThat(trial.right().get().getNameBook()).isEqualTo("Book 1");
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void racingCallersLetExactlyOneTrialThroughAndItClosesTheCircuit() throws Exception {
+        //given
+        int racers = 32;
+        AtomicReference<Promise<Either<GenericError, Book>>> answer = new AtomicReference<>();
+        ServiceBook<GenericError> service = id -> id == 0
+                ? Futures.failed(new RuntimeException("Exception to get Book"))
+                : answer.get().future();
+        CircuitBreaker<GenericError> breaker = new CircuitBreaker<>(monad, 1,
+                FiniteDuration.create(1, TimeUnit.SECONDS), FiniteDuration.create(1, TimeUnit.MILLISECONDS));
+        ServiceBook<GenericError> guarded = CircuitBreakerServices.book(service, breaker);
+        ExecutorService callers = Executors.newFixedThreadPool(racers);
+
+        try {
+            for (int round = 0; round < 200; round++) {
+                //when
+                answer.set(Futures.promise());
+                Await.ready(guarded.getBook(0), TIMEOUT);
+                Thread.sleep(2);
+                CyclicBarrier start = new CyclicBarrier(racers);
+                List<java.util.concurrent.Future<Future<Either<GenericError, Book>>>> calls = new ArrayList<>();
+                for (int i = 0; i < racers; i++) {
+                    calls.add(callers.submit(() -> {
+                        start.await();
+                        return guarded.getBook(1);
+                    }));
+                }
+                int trials = 0;
+                for (java.util.concurrent.Future<Future<Either<GenericError, Book>>> call : calls) {
+                    trials += call.get().isCompleted() ? 0 : 1;
+                }
+                answer.get().success(new Right<>(new Book("Book 1", "author-book-1", Collections.emptyList())));
+
+                //then
+                assertThat(trials).isEqualTo(1);
+                assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void hungTrialTimesOutAndOpensTheCircuitAgain() throws Exception {
+        //given
+        Promise<Either<GenericError, Book>> hung = Futures.promise();
+        AtomicInteger calls = new AtomicInteger();
+        ServiceBook<GenericError> failingThenHung = id -> calls.incrementAndGet() == 1
+                ? Futures.failed(new RuntimeException("Exception to get Book"))
+                : hung.future();
+        CircuitBreaker<GenericError> breaker = new CircuitBreaker<>(monad, 1,
+                FiniteDuration.create(30, TimeUnit.MILLISECONDS), FiniteDuration.create(10, TimeUnit.MILLISECONDS));
+        ServiceBook<GenericError> guarded = CircuitBreakerServices.book(failingThenHung, breaker);
+
+        //when
+        Await.ready(guarded.getBook(1), TIMEOUT);
+        Thread.sleep(20);
+        Either<GenericError, Book> trial = Await.result(guarded.getBook(1), TIMEOUT);
+
+        //then
+        assertThat(trial.left().get()).isInstanceOf(TimeoutError.class);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void lateResultsOfClosedCallsDoNotEndTheTrial() throws Exception {
+        //given
+        Promise<Either<GenericError, Book>> late = Futures.promise();
+        Promise<Either<GenericError, Book>> trial = Futures.promise();
+        AtomicInteger calls = new AtomicInteger();
+        ServiceBook<GenericError> service = id -> {
+            switch (calls.incrementAndGet()) {
+                case 1: return late.future();
+                case 2: return Futures.failed(new RuntimeException("Exception to get Book"));
+                default: return trial.future();
+            }
+        };
+        CircuitBreaker<GenericError> breaker = new CircuitBreaker<>(monad, 1,
+                FiniteDuration.create(1, TimeUnit.MINUTES), FiniteDuration.create(10, TimeUnit.MILLISECONDS));
+        ServiceBook<GenericError> guarded = CircuitBreakerServices.book(service, breaker);
+
+        //when
+        Future<Either<GenericError, Book>> startedClosed = guarded.getBook(1);
+        Await.ready(guarded.getBook(2), TIMEOUT);
+        Thread.sleep(20);
+        Future<Either<GenericError, Book>> trialCall = guarded.getBook(3);
+        late.success(new Right<>(new Book("Book 1", "author-book-1", Collections.emptyList())));
+        Await.ready(startedClosed, TIMEOUT);
+
+        //then
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        trial.success(new Right<>(new Book("Book 3", "author-book-3", Collections.emptyList())));
+        Await.ready(trialCall, TIMEOUT);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void fullBulkheadRejectsOnlyItsOwnService() throws Exception {
+        //given
+        ExecutionContextExecutor chapterPool = Bulkheads.pool("chapters", 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        chapterPool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ServiceChapter<GenericError> chapters = new ServiceChapterFutEitherMock(chapterPool);
+        ServiceBook<GenericError> books = new ServiceBookMock(Bulkheads.semaphore(ExecutionContexts.global(), 4));
+
+        //when
+        Either<GenericError, Chapter> chapter = Await.result(monad.map(chapters.getChapter(1001L), c -> c), TIMEOUT);
+        Either<GenericError, Book> book = Await.result(books.getBook(1), TIMEOUT);
+        release.countDown();
+
+        //then
+        assertThat(chapter.left().get()).isInstanceOf(RejectedError.class);
+        assertThat(book.right().get().getNameBook()).isEqualTo("Book 1");
+    }
+
+    @Test
+    public void concurrentCallsWithTheSameKeyShareOneCall() throws Exception {
+        //given
+        ExecutionContextExecutor single = Bulkheads.pool("authors", 1, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        single.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ServiceAuthorMock authors = new ServiceAuthorMock(single, true);
+
+        //when
+        Future<Either<GenericError, Author>> first = authors.getAuthor("author-book-1");
+        Future<Either<GenericError, Author>> second = authors.getAuthor("author-book-1");
+        Future<Either<GenericError, Author>> other = authors.getAuthor("author-book-3");
+        release.countDown();
+        Await.result(first, TIMEOUT);
+        Future<Either<GenericError, Author>> afterwards = authors.getAuthor("author-book-1");
+
+        //then
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        assertThat(afterwards).isNotSameAs(first);
+        assertThat(Await.result(afterwards, TIMEOUT).right().get()).isEqualTo(Await.result(first, TIMEOUT).right().get());
+    }
+
+    @Test
+    public void coalescedCallIsNotSkippedWhenTheFirstCallersRequestIsCancelled() throws Exception {
+        //given
+        ExecutionContextExecutor single = Bulkheads.pool("authors", 1, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        single.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ServiceAuthorMock authors = new ServiceAuthorMock(single, true);
+        RequestContext context = RequestContext.create("request-1");
+
+        //when
+        Future<Either<GenericError, Author>> first = context.call(() -> authors.getAuthor("author-book-1"));
+        Future<Either<GenericError, Author>> follower = authors.getAuthor("author-book-1");
+        context.cancel();
+        release.countDown();
+
+        //then
+        assertThat(follower).isSameAs(first);
+        assertThat(Await.result(follower, TIMEOUT).right().get().getName()).isNotNull();
+    }
+
+    @Test
+    public void cacheServesStaleValuesWhileRefreshingAndCachesLeftsBriefly() throws Exception {
+        //given
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        ServiceAuthorMock mock = new ServiceAuthorMock();
+        ServiceAuthor<GenericError> counting = id -> {
+            calls.incrementAndGet();
+            return mock.getAuthor(id);
+        };
+        AsyncCache<String, GenericError, Author> cache = new AsyncCache<>(
+                CachePolicy.expireAfterWrite(100, FiniteDuration.create(10, TimeUnit.SECONDS))
+                        .withNegativeTtl(FiniteDuration.create(1, TimeUnit.SECONDS))
+                        .withStaleWhileRevalidate(FiniteDuration.create(5, TimeUnit.SECONDS))
+                        .withClock(clock::get));
+        ServiceAuthor<GenericError> authors = CachedServices.author(counting, cache);
+
+        //when
+        Await.result(authors.getAuthor("author-book-1"), TIMEOUT);
+        Await.result(authors.getAuthor("author-book-2"), TIMEOUT);
+        Await.result(authors.getAuthor("author-book-1"), TIMEOUT);
+        Await.result(authors.getAuthor("author-book-2"), TIMEOUT);
+        int callsWhileFresh = calls.get();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(12));
+        Future<Either<GenericError, Author>> stale = authors.getAuthor("author-book-1");
+        Await.result(authors.getAuthor("author-book-2"), TIMEOUT);
+
+        //then
+        assertThat(callsWhileFresh).isEqualTo(2);
+        assertThat(stale.isCompleted()).isTrue();
+        assertThat(Await.result(stale, TIMEOUT).right().get().getName()).isNotNull();
+        assertThat(calls.get()).isEqualTo(4);
+        assertThat(cache.hits()).isEqualTo(3);
+        assertThat(cache.misses()).isEqualTo(3);
+    }
+
+    @Test
+    public void cacheTtlCountsFromWhenASlowCallCompletes() throws Exception {
+        //given
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        Promise<Either<GenericError, Author>> slow = Futures.promise();
+        AsyncCache<String, GenericError, Author> cache = new AsyncCache<>(
+                CachePolicy.expireAfterWrite(100, FiniteDuration.create(1, TimeUnit.SECONDS))
+                        .withClock(clock::get));
+        ServiceAuthor<GenericError> authors = CachedServices.author(id -> {
+            calls.incrementAndGet();
+            return slow.future();
+        }, cache);
+
+        //when
+        Future<Either<GenericError, Author>> first = authors.getAuthor("author-book-1");
+        Future<Either<GenericError, Author>> concurrent = authors.getAuthor("author-book-1");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        slow.success(new Right<>(new Author("Author 1")));
+        Await.result(first, TIMEOUT);
+        Await.result(concurrent, TIMEOUT);
+        Await.result(authors.getAuthor("author-book-1"), TIMEOUT);
+
+        //then
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(2);
+    }
+
+    @Test
+    public void cacheEvictsKeysReadOnceBeforeKeysReadAgain() throws Exception {
+        //given
+        AsyncCache<Integer, GenericError, Book> cache = new AsyncCache<>(
+                CachePolicy.expireAfterWrite(5, FiniteDuration.create(1, TimeUnit.MINUTES)));
+        ServiceBook<GenericError> books = CachedServices.book(new ServiceBookMock(), cache);
+        Await.result(books.getBook(1), TIMEOUT);
+        Await.result(books.getBook(1), TIMEOUT);
+
+        //when
+        for (int id = 10; id < 20; id++) {
+            Await.result(books.getBook(id), TIMEOUT);
+        }
+        long misses = cache.misses();
+        Await.result(books.getBook(1), TIMEOUT);
+
+        //then
+        assertThat(cache.size()).isEqualTo(5);
+        assertThat(cache.misses()).isEqualTo(misses);
+    }
+
+    @Test
+    public void loaderSendsTheCallsOfAWindowAsOneBatch() throws Exception {
+        //given
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        List<String> senders = new CopyOnWriteArrayList<>();
+        ServiceChapterFutEitherMock mock = new ServiceChapterFutEitherMock();
+        ServiceChapter<GenericError> batching = new ServiceChapter<GenericError>() {
+            @Override
+            public Future<Either<GenericError, Chapter>> getChapter(long idChapter) {
+                return mock.getChapter(idChapter);
+            }
+
+            @Override
+            public Future<Either<GenericError, List<Either<GenericError, Chapter>>>> getChapters(List<Long> idChapters) {
+                batches.add(idChapters);
+                senders.add(Thread.currentThread().getName());
+                return mock.getChapters(idChapters);
+            }
+        };
+        ServiceChapter<GenericError> loader = new ChapterLoader<>(batching, ExecutionContexts.global(),
+                FiniteDuration.create(20, TimeUnit.MILLISECONDS), 100);
+
+        //when
+        Future<Either<GenericError, Chapter>> first = loader.getChapter(1001L);
+        Future<Either<GenericError, Chapter>> again = loader.getChapter(1001L);
+        Future<Either<GenericError, Chapter>> missing = loader.getChapter(3005L);
+        Future<Either<GenericError, Chapter>> second = loader.getChapter(1002L);
+
+        //then
+        assertThat(Await.result(first, TIMEOUT).right().get().getTitle()).isEqualTo("Title chapter - 1001");
+        assertThat(again).isSameAs(first);
+        assertThat(Await.result(missing, TIMEOUT).isLeft()).isTrue();
+        assertThat(Await.result(second, TIMEOUT).right().get().getTitle()).isEqualTo("Title chapter - 1002");
+        assertThat(batches).containsExactly(Arrays.asList(1001L, 3005L, 1002L));
+        assertThat(senders).noneMatch(name -> name.startsWith("monad-scheduler"));
+    }
+
+    @Test
+    public void chapterDecoratorsForwardBatchesToTheBatchEndpoint() throws Exception {
+        //given
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        AtomicInteger singleCalls = new AtomicInteger();
+        ServiceChapterFutEitherMock mock = new ServiceChapterFutEitherMock();
+        ServiceChapter<GenericError> batching = new ServiceChapter<GenericError>() {
+            @Override
+            public Future<Either<GenericError, Chapter>> getChapter(long idChapter) {
+                singleCalls.incrementAndGet();
+                return mock.getChapter(idChapter);
+            }
+
+            @Override
+            public Future<Either<GenericError, List<Either<GenericError, Chapter>>>> getChapters(List<Long> idChapters) {
+                batches.add(idChapters);
+                return mock.getChapters(idChapters);
+            }
+        };
+        AsyncCache<Long, GenericError, Chapter> cache = new AsyncCache<>(
+                CachePolicy.expireAfterWrite(100, FiniteDuration.create(1, TimeUnit.MINUTES)));
+        ServiceChapter<GenericError> decorated = CachedServices.chapter(
+                InstrumentedServices.chapter(
+                        HedgedServices.chapter(
+                                CircuitBreakerServices.chapter(batching, new CircuitBreaker<>(monad, 3,
+                                        FiniteDuration.create(1, TimeUnit.SECONDS), FiniteDuration.create(1, TimeUnit.MINUTES))),
+                                monad,
+                                HedgePolicy.atPercentile(95, FiniteDuration.create(1, TimeUnit.SECONDS)),
+                                HedgePolicy.atPercentile(95, FiniteDuration.create(1, TimeUnit.SECONDS))),
+                        new MetricsRegistry()),
+                cache);
+
+        //when
+        List<Either<GenericError, Chapter>> first = Await.result(
+                decorated.getChapters(Arrays.asList(1001L, 3005L, 1002L)), TIMEOUT).right().get();
+        List<Either<GenericError, Chapter>> second = Await.result(
+                decorated.getChapters(Arrays.asList(1002L, 1003L)), TIMEOUT).right().get();
+
+        //then
+        assertThat(first.get(0).right().get().getTitle()).isEqualTo("Title chapter - 1001");
+        assertThat(first.get(1).isLeft()).isTrue();
+        assertThat(second.get(1).right().get().getTitle()).isEqualTo("Title chapter - 1003");
+        assertThat(batches).containsExactly(Arrays.asList(1001L, 3005L, 1002L), Collections.singletonList(1003L));
+        assertThat(singleCalls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void defaultBatchKeepsTheLeftOfEachChapter() throws Exception {
+        //given
+        ServiceChapter<GenericError> failsOnTwo = id -> id == 2
+                ? Futures.failed(new RuntimeException("Chapter 2 failed"))
+                : new ServiceChapterFutEitherMock().getChapter(id);
+
+        //when
+        Future<Either<GenericError, List<Either<GenericError, Chapter>>>> batch =
+                ServiceChapter.oneByOne(failsOnTwo, Arrays.asList(1L, 2L, 3005L, 4L), monad::errorFrom);
+        Future<Either<GenericError, List<Either<GenericError, Chapter>>>> byDefault =
+                failsOnTwo.getChapters(Arrays.asList(1L, 3005L));
+
+        //then
+        List<Either<GenericError, Chapter>> chapters = Await.result(batch, TIMEOUT).right().get();
+        assertThat(chapters).hasSize(4);
+        assertThat(chapters.get(0).right().get().getTitle()).isEqualTo("Title chapter - 1");
+        assertThat(chapters.get(1).left().get().getDescription()).isEqualTo("Chapter 2 failed");
+        assertThat(chapters.get(2).left().get().getDescription()).isEqualTo("Chapter not found 3005");
+        assertThat(chapters.get(3).right().get().getTitle()).isEqualTo("Title chapter - 4");
+        assertThat(Await.result(byDefault, TIMEOUT).right().get().get(1).isLeft()).isTrue();
+    }
+
+    @Test
+    public void simulatedServicesAnswerOnATimerWithoutBlockingThreads() throws Exception {
+        //given
+        ServiceBook<GenericError> books = SimulatedServices.book(
+                SimulationProfile.latency(LatencyDistribution.fixed(FiniteDuration.create(50, TimeUnit.MILLISECONDS))));
+        ServiceAuthor<GenericError> failing = SimulatedServices.author(
+                SimulationProfile.latency(LatencyDistribution.logNormal(FiniteDuration.create(1, TimeUnit.MILLISECONDS), 0.5))
+                        .withErrorRate(1));
+
+        //when
+        long start = System.nanoTime();
+        List<Future<Either<GenericError, Book>>> calls = new ArrayList<>();
+        for (int id = 10; id < 1010; id++) {
+            calls.add(books.getBook(id));
+        }
+        Either<GenericError, List<Book>> all = Await.result(monad.sequence(calls), TIMEOUT);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //then
+        assertThat(all.right().get()).hasSize(1000);
+        assertThat(elapsed).isBetween(45L, 2000L);
+        assertThat(Await.result(failing.getAuthor("author-book-1"), TIMEOUT).left().get().getDescription())
+                .isEqualTo("Simulated error in ServiceAuthor");
+    }
+
+    @Test
+    public void simulatedCallsCompleteOnTheGivenExecutionContextWithoutHoldingThreads() throws Exception {
+        //given
+        ExecutorService answers = Executors.newFixedThreadPool(2, r -> new Thread(r, "simulated-answers"));
+        try {
+            ServiceBook<GenericError> books = SimulatedServices.book(
+                    SimulationProfile.latency(LatencyDistribution.fixed(FiniteDuration.create(200, TimeUnit.MILLISECONDS))),
+                    ExecutionContexts.fromExecutor(answers));
+            Await.result(books.getBook(1), TIMEOUT);
+            int threadsBefore = Thread.getAllStackTraces().size();
+
+            //when
+            Set<String> completedOn = ConcurrentHashMap.newKeySet();
+            List<Future<Either<GenericError, Book>>> calls = new ArrayList<>();
+            for (int id = 10; id < 1010; id++) {
+                Future<Either<GenericError, Book>> call = books.getBook(id);
+                call.onComplete(result -> {
+                    completedOn.add(Thread.currentThread().getName());
+                    return BoxedUnit.UNIT;
+                }, SameThreadExecutionContext.INSTANCE);
+                calls.add(call);
+            }
+            int threadsWhilePending = Thread.getAllStackTraces().size();
+            long pending = calls.stream().filter(call -> !call.isCompleted()).count();
+            Await.result(monad.sequence(calls), TIMEOUT);
+
+            //then
+            assertThat(pending).isGreaterThan(900);
+            assertThat(threadsWhilePending - threadsBefore).isLessThan(5);
+            assertThat(completedOn).containsOnly("simulated-answers");
+        } finally {
+            answers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void simulatedExceptionRateFailsTheCalls() throws Exception {
+        //given
+        ServiceBook<GenericError> books = SimulatedServices.book(
+                SimulationProfile.latency(LatencyDistribution.fixed(FiniteDuration.create(1, TimeUnit.MILLISECONDS)))
+                        .withExceptionRate(1));
+
+        //when
+        Future<Either<GenericError, Book>> call = books.getBook(1);
+        Await.ready(call, TIMEOUT);
+
+        //then
+        assertThat(call.value().get().failed().get())
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Simulated exception in ServiceBook");
+        assertThat(Await.result(monad.map(call, b -> b), TIMEOUT).isLeft()).isTrue();
+    }
+
+    @Test
+    public void bimodalLatencyIsSlowForTheGivenFractionOfCalls() throws Exception {
+        //given
+        LatencyDistribution fast = LatencyDistribution.fixed(FiniteDuration.create(0, TimeUnit.MILLISECONDS));
+        LatencyDistribution slow = LatencyDistribution.fixed(FiniteDuration.create(150, TimeUnit.MILLISECONDS));
+        LatencyDistribution bimodal = LatencyDistribution.bimodal(fast, slow, 0.2);
+        ServiceBook<GenericError> books = SimulatedServices.book(
+                SimulationProfile.latency(LatencyDistribution.bimodal(fast, slow, 0.5)));
+
+        //when
+        int slowDraws = 0;
+        for (int i = 0; i < 10000; i++) {
+            slowDraws += bimodal.nextNanos(ThreadLocalRandom.current()) > 0 ? 1 : 0;
+        }
+        List<Future<Either<GenericError, Book>>> calls = new ArrayList<>();
+        for (int id = 10; id < 110; id++) {
+            calls.add(books.getBook(id));
+        }
+        Thread.sleep(75);
+        long completedEarly = calls.stream().filter(Future::isCompleted).count();
+        Await.result(monad.sequence(calls), TIMEOUT);
+
+        //then
+        assertThat(slowDraws).isBetween(1700, 2300);
+        assertThat(completedEarly).isBetween(20L, 80L);
+    }
+
+    @Test
+    public void simulatedThroughputLimitQueuesAndThenRejects() throws Exception {
+        //given
+        ServiceSales<GenericError> sales = SimulatedServices.sales(
+                SimulationProfile.latency(LatencyDistribution.fixed(FiniteDuration.create(0, TimeUnit.MILLISECONDS)))
+                        .withThroughput(100, FiniteDuration.create(45, TimeUnit.MILLISECONDS)));
+
+        //when
+        List<Future<Either<GenericError, Sales>>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(sales.getSales(1));
+        }
+
+        //then
+        assertThat(Await.result(calls.get(0), TIMEOUT).isRight()).isTrue();
+        assertThat(Await.result(calls.get(4), TIMEOUT).isRight()).isTrue();
+        assertThat(Await.result(monad.map(calls.get(9), s -> s), TIMEOUT).left().get()).isInstanceOf(RejectedError.class);
+    }
+}
@@ -1,7 +1,10 @@
 package com.ing.f2etraining;
 
 import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
 import errors.GenericError;
+import errors.impl.CompoundError;
+import errors.impl.PartialError;
 import exercise.bookstore.bean.Author;
 import exercise.bookstore.bean.Book;
 import exercise.bookstore.bean.Chapter;
@@ -17,19 +20,31 @@ import exercise.bookstore.service.impl.ServiceAuthorMock;
 import exercise.bookstore.service.impl.ServiceBookMock;
 import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
 import exercise.bookstore.service.impl.ServiceSalesMock;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import monad.MonadFutEither;
 import monad.impl.MonadFutEitherError;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import scala.concurrent.Await;
 import scala.concurrent.Future;
+import scala.concurrent.Promise;
 import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 import scala.util.Either;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -172,6 +187,208 @@ public class SummaryServiceTest {
     
   }
   
+  @Test
+  public void summariesOfSeveralBooks() throws Exception {
+
+    // When
+    final Future<Either<GenericError, Map<Integer, Summary>>> summariesFu = srvSummary
+        .getSummaries(Arrays.asList(1, 1000, 1));
+
+    final Either<GenericError, Map<Integer, Summary>> res = Await.result(summariesFu, Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    final Map<Integer, Summary> summaries = res.right().get();
+
+    assertThat( summaries.keySet() ).containsExactly( 1, 1000 );
+    assertThat( summaries.get(1) ).isEqualTo( Await.result(srvSummary.getSummary(1), Duration.apply(100, TimeUnit.SECONDS)).right().get() );
+    assertThat( summaries.get(1000).getSales().isPresent() ).isFalse();
+
+  }
+
+  @Test
+  public void summariesWithAnErrorPerFailedBook() throws Exception {
+
+    // When
+    final Future<Either<GenericError, Map<Integer, Summary>>> summariesFu = srvSummary
+        .getSummaries(Arrays.asList(1, 2, 3, 4));
+
+    final Either<GenericError, Map<Integer, Summary>> res = Await.result(summariesFu, Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    final List<GenericError> errors = ((CompoundError) res.left().get()).getErrors();
+
+    assertThat( errors ).extracting( GenericError::getDescription ).containsExactly(
+        "It is impossible to get book summary 2: Author not found author-book-2",
+        "It is impossible to get book summary 3: Chapter not found 3005",
+        "It is impossible to get book summary 4: Exception to get Book" );
+    final PartialError<?> partial = (PartialError<?>) res.left().get();
+    assertThat( ((Map<?, ?>) partial.getPartial()).keySet() ).containsExactly( 1 );
+
+  }
+
+  @Test
+  public void summariesRunAtMostChaptersInFlightBatchesOfChaptersInFlight() throws Exception {
+
+    // Given
+    final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final ServiceChapter<GenericError> batching = new ServiceChapter<GenericError>() {
+      @Override
+      public Future<Either<GenericError, Chapter>> getChapter(long idChapter) {
+        return srvChapterCheck.getChapter(idChapter);
+      }
+
+      @Override
+      public Future<Either<GenericError, List<Either<GenericError, Chapter>>>> getChapters(List<Long> idChapters) {
+        batchSizes.add(idChapters.size());
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        final Promise<Either<GenericError, List<Either<GenericError, Chapter>>>> chapters = Futures.promise();
+        srvChapterCheck.getChapters(idChapters).onComplete(t -> {
+          running.decrementAndGet();
+          return chapters.complete(t);
+        }, ExecutionContexts.global());
+        return chapters.future();
+      }
+    };
+    srvSummary = new SummaryServiceImpl(srvBook, srvSales, batching, srvAuthor, monadTransformer, 2);
+
+    // When
+    final Either<GenericError, Map<Integer, Summary>> res = Await.result(
+        srvSummary.getSummaries(Arrays.asList(1, 1000)), Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    assertThat( res.right().get().get(1).getChapter() ).hasSize( 5 );
+    assertThat( batchSizes ).allMatch( size -> size <= 2 );
+    assertThat( batchSizes.size() ).isGreaterThan( 2 );
+    assertThat( maxRunning.get() ).isBetween( 1, 2 );
+
+  }
+
+  @Test
+  public void streamOfSummariesFollowsTheDemand() throws Exception {
+
+    // Given
+    final AtomicInteger consumed = new AtomicInteger();
+    final Iterator<Integer> bookIds = IntStream.range(10, 210)
+        .peek(id -> consumed.incrementAndGet())
+        .iterator();
+    final List<String> names = new CopyOnWriteArrayList<>();
+    final CountDownLatch three = new CountDownLatch(3);
+    final CountDownLatch completed = new CountDownLatch(1);
+    final AtomicReference<Subscription> subscription = new AtomicReference<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    // When
+    srvSummary.streamSummaries(bookIds, 4, true).subscribe(new Subscriber<Either<GenericError, Summary>>() {
+      @Override
+      public void onSubscribe(Subscription s) {
+        subscription.set(s);
+        s.request(3);
+      }
+
+      @Override
+      public void onNext(Either<GenericError, Summary> summary) {
+        names.add(summary.right().get().getBook().getNameBook());
+        three.countDown();
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        error.set(t);
+        completed.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        completed.countDown();
+      }
+    });
+
+    final boolean gotThree = three.await(10, TimeUnit.SECONDS);
+    final int consumedForThree = consumed.get();
+    subscription.get().request(Long.MAX_VALUE);
+    final boolean gotAll = completed.await(10, TimeUnit.SECONDS);
+
+    // Then
+    assertThat( gotThree ).isTrue();
+    assertThat( gotAll ).isTrue();
+    assertThat( error.get() ).isNull();
+    assertThat( consumedForThree ).isEqualTo( 3 );
+    assertThat( names ).hasSize( 200 );
+    assertThat( names ).isEqualTo( IntStream.range(10, 210).mapToObj(id -> "Book " + id).collect(Collectors.toList()) );
+
+  }
+
+  @Test
+  public void summaryWithinADeadlineIsComplete() throws Exception {
+
+    // When
+    final Either<GenericError, Summary> res = Await.result(
+        srvSummary.getSummary(1, FiniteDuration.create(5, TimeUnit.SECONDS)), Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    assertThat( res.right().get() ).isEqualTo( Await.result(srvSummary.getSummary(1), Duration.apply(100, TimeUnit.SECONDS)).right().get() );
+    assertThat( res.right().get().isComplete() ).isTrue();
+
+  }
+
+  @Test
+  public void summaryAfterTheDeadlineLeavesOutWhatIsLate() throws Exception {
+
+    // Given
+    final Promise<Either<GenericError, Chapter>> lateChapter = Futures.promise();
+    final Promise<Either<GenericError, Sales>> lateSales = Futures.promise();
+    final SummaryService<GenericError> srvPartial = new SummaryServiceImpl(
+        srvBook,
+        bookId -> lateSales.future(),
+        idChapter -> idChapter == 1003L ? lateChapter.future() : srvChapter.getChapter(idChapter),
+        srvAuthor,
+        monadTransformer);
+
+    // When
+    final Either<GenericError, Summary> res = Await.result(
+        srvPartial.getSummary(1, FiniteDuration.create(100, TimeUnit.MILLISECONDS)), Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    final Summary summary = res.right().get();
+
+    assertThat( summary.getMissing() ).containsExactlyInAnyOrder( Summary.Part.CHAPTERS, Summary.Part.SALES );
+    assertThat( summary.getChapter() ).extracting( Chapter::getTitle ).containsExactly(
+        "Title chapter - 1001", "Title chapter - 1002", "Title chapter - 1004", "Title chapter - 1005" );
+    assertThat( summary.getSales().isPresent() ).isFalse();
+    assertThat( summary.getAuthor() ).isEqualTo( srvAuthorCheck.findAuthor( "author-book-1" ).right().get() );
+
+  }
+
+  @Test
+  public void summaryWithinADeadlineStartsAtMostChaptersInFlightCalls() throws Exception {
+
+    // Given
+    final Promise<Either<GenericError, Chapter>> hung = Futures.promise();
+    final List<Long> started = new CopyOnWriteArrayList<>();
+    final SummaryService<GenericError> srvPartial = new SummaryServiceImpl(
+        srvBook,
+        srvSales,
+        idChapter -> {
+          started.add(idChapter);
+          return hung.future();
+        },
+        srvAuthor,
+        monadTransformer,
+        2);
+
+    // When
+    final Either<GenericError, Summary> res = Await.result(
+        srvPartial.getSummary(1, FiniteDuration.create(100, TimeUnit.MILLISECONDS)), Duration.apply(100, TimeUnit.SECONDS));
+
+    // Then
+    assertThat( started ).containsExactly( 1001L, 1002L );
+    assertThat( res.right().get().getChapter() ).isEmpty();
+    assertThat( res.right().get().getMissing() ).contains( Summary.Part.CHAPTERS );
+
+  }
+
   private void testGenericErrorGeneric( final Integer bookId ) throws Exception {
     
     // When
@@ -0,0 +1,32 @@
+package exercise.bookstore.runtime;
+
+import java.util.concurrent.Executors;
+
+import akka.dispatch.ExecutionContexts;
+import scala.concurrent.ExecutionContextExecutorService;
+
+/**
+ * Execution contexts that run every task on a new virtual thread.
+ *
+ * Blocking calls (JDBC, sockets) park the virtual thread instead of holding a platform
+ * thread, so thousands of concurrent service calls do not need a bigger pool.
+ */
+public final class VirtualThreadExecutionContexts {
+
+	private VirtualThreadExecutionContexts(){}
+
+	public static ExecutionContextExecutorService newPerTaskExecutionContext() {
+
+		return ExecutionContexts.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	/**
+	 * @param name prefix of the thread names, followed by a counter
+	 */
+	public static ExecutionContextExecutorService newPerTaskExecutionContext(String name) {
+
+		return ExecutionContexts.fromExecutorService(
+				Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory()));
+	}
+
+}
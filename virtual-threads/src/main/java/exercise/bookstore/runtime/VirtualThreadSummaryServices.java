@@ -0,0 +1,38 @@
+package exercise.bookstore.runtime;
+
+import errors.GenericError;
+import exercise.bookstore.business.SummaryService;
+import exercise.bookstore.business.impl.SummaryServiceImpl;
+import exercise.bookstore.service.impl.ServiceAuthorMock;
+import exercise.bookstore.service.impl.ServiceBookMock;
+import exercise.bookstore.service.impl.ServiceChapterFutEitherMock;
+import exercise.bookstore.service.impl.ServiceSalesMock;
+import monad.impl.MonadFutEitherError;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutorService;
+
+/**
+ * Builds the bookstore with every service call on virtual threads.
+ *
+ * The caller owns the services execution context and shuts it down when the bookstore
+ * is no longer used.
+ */
+public final class VirtualThreadSummaryServices {
+
+	private VirtualThreadSummaryServices(){}
+
+	/**
+	 * @param ec where the monad runs its continuations; they do not block, so a small pool is enough
+	 * @param services where the service calls run, e.g. VirtualThreadExecutionContexts.newPerTaskExecutionContext
+	 */
+	public static SummaryService<GenericError> mocks(ExecutionContext ec, ExecutionContextExecutorService services) {
+
+		return new SummaryServiceImpl(
+				new ServiceBookMock(services),
+				new ServiceSalesMock(services),
+				new ServiceChapterFutEitherMock(services),
+				new ServiceAuthorMock(services),
+				new MonadFutEitherError(ec));
+	}
+
+}
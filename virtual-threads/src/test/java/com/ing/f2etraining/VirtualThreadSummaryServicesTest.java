@@ -0,0 +1,50 @@
+package com.ing.f2etraining;
+
+import akka.dispatch.ExecutionContexts;
+import errors.GenericError;
+import exercise.bookstore.bean.Summary;
+import exercise.bookstore.business.SummaryService;
+import exercise.bookstore.runtime.VirtualThreadExecutionContexts;
+import exercise.bookstore.runtime.VirtualThreadSummaryServices;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.ExecutionContextExecutorService;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import scala.util.Either;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadSummaryServicesTest {
+
+    private final ExecutionContextExecutorService services =
+            VirtualThreadExecutionContexts.newPerTaskExecutionContext("bookstore-service-");
+
+    @After
+    public void shutdown() {
+        services.shutdownNow();
+    }
+
+    @Test
+    public void summaryIsBuiltWithServicesOnVirtualThreads() throws Exception {
+        //given
+        SummaryService<GenericError> srvSummary = VirtualThreadSummaryServices.mocks(ExecutionContexts.global(), services);
+
+        //when
+        Either<GenericError, Summary> res = Await.result(srvSummary.getSummary(1), Duration.apply(5, TimeUnit.SECONDS));
+
+        //then
+        assertThat(res.right().get().getChapter()).hasSize(5);
+    }
+
+    @Test
+    public void tasksRunOnVirtualThreads() throws Exception {
+        //when
+        Future<Boolean> virtual = akka.dispatch.Futures.future(() -> Thread.currentThread().isVirtual(), services);
+
+        //then
+        assertThat(Await.result(virtual, Duration.apply(5, TimeUnit.SECONDS))).isTrue();
+    }
+}